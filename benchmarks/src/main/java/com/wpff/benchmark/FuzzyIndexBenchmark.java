@@ -0,0 +1,111 @@
+package com.wpff.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wpff.common.index.FuzzyIndex;
+
+/**
+ * Cost per query of a typo tolerant title search ('match=fuzzy') over a
+ * million titles. The titles are made up from a vocabulary whose words are
+ * used unevenly, as in real titles, with a few common short words mixed in.
+ * Some real titles are added so the misspelled queries have something to
+ * find.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class FuzzyIndexBenchmark {
+
+  private static final int TITLES = 1_000_000;
+
+  private static final int VOCABULARY = 60_000;
+
+  /**
+   * Most matches returned, as by the book webservice
+   */
+  private static final int MAX_MATCHES = 1000;
+
+  private static final String[] SYLLABLES = {
+    "ka", "lo", "mi", "ne", "ro", "su", "ta", "vi", "za", "be", "do", "fi", "gu",
+    "ha", "ji", "ku", "le", "mo", "nu", "pi", "ra", "se", "to", "ul", "ve", "wa",
+    "xi", "yo", "ze", "an", "el", "in", "or", "us", "th", "st", "er", "ing" };
+
+  private static final String[] COMMON = { "the", "of", "a", "and", "in", "to" };
+
+  private static final String[] REAL = {
+    "The Hobbit, or There and Back Again",
+    "The Lord of the Rings",
+    "The Silmarillion",
+    "Foundation and Empire",
+    "Second Foundation",
+    "Dune Messiah",
+    "Children of Dune",
+    "Do Androids Dream of Electric Sheep?",
+    "Nineteen Eighty-Four",
+    "Tolkien: A Biography" };
+
+  @Param({ "hobit", "lord of the rnigs", "foundaton", "dune mesiah", "tolkein", "androids draem" })
+  public String query;
+
+  private FuzzyIndex index;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(1);
+
+    String[] vocabulary = new String[VOCABULARY];
+    for (int i = 0; i < vocabulary.length; i++) {
+      StringBuilder word = new StringBuilder();
+      int syllables = 1 + random.nextInt(4);
+      for (int j = 0; j < syllables; j++) {
+        word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+      }
+      vocabulary[i] = word.toString();
+    }
+
+    index = new FuzzyIndex();
+    for (int i = 0; i < TITLES; i++) {
+      if (i % 100_000 == 0) {
+        index.put(i, REAL[(i / 100_000) % REAL.length]);
+        continue;
+      }
+
+      StringBuilder title = new StringBuilder();
+      int words = 2 + random.nextInt(5);
+      for (int j = 0; j < words; j++) {
+        if (random.nextInt(3) == 0) {
+          title.append(COMMON[random.nextInt(COMMON.length)]);
+        }
+        else {
+          // Low ranks are far more likely, like the words of real titles
+          int rank = (int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 8000);
+          title.append(vocabulary[rank]);
+        }
+        title.append(' ');
+      }
+      index.put(i, title.toString());
+    }
+  }
+
+  @Benchmark
+  public List<Integer> search() {
+    return index.search(query, MAX_MATCHES);
+  }
+}
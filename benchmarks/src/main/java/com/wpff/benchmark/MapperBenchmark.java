@@ -0,0 +1,135 @@
+package com.wpff.benchmark;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.beanutils.BeanUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wpff.core.Author;
+import com.wpff.core.Book;
+import com.wpff.core.DatabaseUserBook;
+import com.wpff.core.beans.FullUserBook;
+import com.wpff.resources.AuthorMapper;
+import com.wpff.resources.BookMapper;
+import com.wpff.resources.UserBookMapper;
+import com.wpff.result.AuthorResult;
+import com.wpff.result.BookResult;
+
+/**
+ * Cost per object of converting each entity into its result bean. The
+ * 'beanUtils' benchmarks are the reflective copies the webservices used
+ * before, the 'mapper' benchmarks are the explicit mappers that replaced them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapperBenchmark {
+
+  private Book book;
+
+  private Author author;
+
+  private DatabaseUserBook userBook;
+
+  @Setup
+  public void setup() {
+    book = new Book();
+    book.setId(42);
+    book.setAuthorId(7);
+    book.setYear(1965);
+    book.setTitle("Dune");
+    book.setDescription("Set on the desert planet Arrakis.");
+    book.setIsbn("0441172717,9780441172719,0340960191");
+    book.setSubject("Science fiction,Arrakis,Desert");
+    book.setOlWorks("https://openlibrary.org/works/OL893415W");
+    book.setImageSmall("https://covers.openlibrary.org/b/id/1-S.jpg");
+    book.setImageMedium("https://covers.openlibrary.org/b/id/1-M.jpg");
+    book.setImageLarge("https://covers.openlibrary.org/b/id/1-L.jpg");
+
+    author = new Author();
+    author.setId(7);
+    author.setName("Frank Herbert");
+    author.setBirthDate("8 October 1920");
+    author.setOlKey("OL79034A");
+    author.setSubjectsAsCsv("Science fiction,Fiction,Dune");
+    author.setImageSmall("https://covers.openlibrary.org/a/olid/OL79034A-S.jpg");
+    author.setImageMedium("https://covers.openlibrary.org/a/olid/OL79034A-M.jpg");
+    author.setImageLarge("https://covers.openlibrary.org/a/olid/OL79034A-L.jpg");
+
+    userBook = new DatabaseUserBook(3, 1, 42, true, "Read twice");
+    userBook.setDateAdded(new Date(0));
+  }
+
+  /************************************************************************/
+  /** Book **/
+  /************************************************************************/
+
+  @Benchmark
+  public BookResult beanUtilsBook() throws IllegalAccessException, InvocationTargetException {
+    BookResult result = new BookResult();
+    BeanUtils.copyProperties(result, book);
+    BeanUtils.copyProperty(result, "openlibraryWorkUrl", book.getOlWorks());
+    BeanUtils.copyProperty(result, "firstPublishedYear", book.getYear());
+    List<String> subjects = Arrays.asList(book.getSubject().split("\\s*,\\s*"));
+    BeanUtils.copyProperty(result, "subjects", subjects);
+    List<String> isbns = Arrays.asList(book.getIsbn().split("\\s*,\\s*"));
+    BeanUtils.copyProperty(result, "isbns", isbns);
+    BeanUtils.copyProperty(result, "authorName", "Frank Herbert");
+    return result;
+  }
+
+  @Benchmark
+  public BookResult mapperBook() {
+    return BookMapper.toResult(book, "Frank Herbert");
+  }
+
+  /************************************************************************/
+  /** Author **/
+  /************************************************************************/
+
+  @Benchmark
+  public AuthorResult beanUtilsAuthor() throws IllegalAccessException, InvocationTargetException {
+    AuthorResult result = new AuthorResult();
+    BeanUtils.copyProperties(result, author);
+    List<String> subjects = Arrays.asList(author.getSubjectsAsCsv().split("\\s*,\\s*"));
+    BeanUtils.copyProperty(result, "subjects", subjects);
+    return result;
+  }
+
+  @Benchmark
+  public AuthorResult mapperAuthor() {
+    return AuthorMapper.toResult(author);
+  }
+
+  /************************************************************************/
+  /** User book **/
+  /************************************************************************/
+
+  @Benchmark
+  public FullUserBook beanUtilsUserBook() throws IllegalAccessException, InvocationTargetException {
+    FullUserBook result = new FullUserBook();
+    BeanUtils.copyProperties(result, userBook);
+    return result;
+  }
+
+  @Benchmark
+  public FullUserBook mapperUserBook() {
+    return UserBookMapper.toFullUserBook(userBook);
+  }
+}
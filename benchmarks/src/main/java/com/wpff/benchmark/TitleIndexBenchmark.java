@@ -0,0 +1,133 @@
+package com.wpff.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wpff.index.TitleIndex;
+
+/**
+ * Cost per query of a title substring search ('title' filter on GET /book)
+ * with the trigram index, and with the "LIKE '%title%'" scan it replaced.
+ *
+ * The scan is measured in memory, over titles that are already lower cased.
+ * MySQL does the same comparison for every row of the book table, after
+ * reading the row, so this is a lower bound of the cost of the LIKE query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class TitleIndexBenchmark {
+
+  private static final int VOCABULARY = 60_000;
+
+  private static final String[] SYLLABLES = {
+    "ka", "lo", "mi", "ne", "ro", "su", "ta", "vi", "za", "be", "do", "fi", "gu",
+    "ha", "ji", "ku", "le", "mo", "nu", "pi", "ra", "se", "to", "ul", "ve", "wa",
+    "xi", "yo", "ze", "an", "el", "in", "or", "us", "th", "st", "er", "ing" };
+
+  private static final String[] COMMON = { "the", "of", "a", "and", "in", "to" };
+
+  private static final String[] REAL = {
+    "The Hobbit, or There and Back Again",
+    "The Lord of the Rings",
+    "Foundation and Empire",
+    "Dune Messiah",
+    "Nineteen Eighty-Four" };
+
+  @Param({ "100000", "1000000" })
+  public int books;
+
+  /**
+   * A rare title, a common phrase and a title that isn't there
+   */
+  @Param({ "hobbit", "of the", "messiah of dune" })
+  public String query;
+
+  private TitleIndex index;
+
+  /**
+   * Lower cased titles, as compared by the scan
+   */
+  private String[] titles;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(1);
+
+    String[] vocabulary = new String[VOCABULARY];
+    for (int i = 0; i < vocabulary.length; i++) {
+      StringBuilder word = new StringBuilder();
+      int syllables = 1 + random.nextInt(4);
+      for (int j = 0; j < syllables; j++) {
+        word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+      }
+      vocabulary[i] = word.toString();
+    }
+
+    index = new TitleIndex();
+    titles = new String[books];
+    for (int i = 0; i < books; i++) {
+      String title;
+      if (i % 10_000 == 0) {
+        title = REAL[(i / 10_000) % REAL.length];
+      }
+      else {
+        StringBuilder words = new StringBuilder();
+        int count = 2 + random.nextInt(5);
+        for (int j = 0; j < count; j++) {
+          if (j > 0) {
+            words.append(' ');
+          }
+          if (random.nextInt(3) == 0) {
+            words.append(COMMON[random.nextInt(COMMON.length)]);
+          }
+          else {
+            // Low ranks are far more likely, like the words of real titles
+            int rank = (int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 8000);
+            words.append(vocabulary[rank]);
+          }
+        }
+        title = words.toString();
+      }
+
+      // Book IDs start at 1
+      index.put(i + 1, title);
+      titles[i] = title.toLowerCase(Locale.ROOT);
+    }
+  }
+
+  @Benchmark
+  public List<Integer> index() {
+    return index.findContaining(query);
+  }
+
+  @Benchmark
+  public List<Integer> like() {
+    String pattern = query.toLowerCase(Locale.ROOT);
+    List<Integer> found = new ArrayList<Integer>();
+    for (int i = 0; i < titles.length; i++) {
+      if (titles[i].contains(pattern)) {
+        found.add(i + 1);
+      }
+    }
+    return found;
+  }
+}
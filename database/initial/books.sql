@@ -6,13 +6,14 @@ CREATE TABLE `tag` (
   `tag_id`  int(11) NOT NULL AUTO_INCREMENT,
   `name` varchar(255) NOT NULL UNIQUE,
   `data` varchar(2048) DEFAULT NULL,
+  `version` bigint NOT NULL DEFAULT 0,
   PRIMARY KEY (`tag_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 
 LOCK TABLES `tag` WRITE;
 
-INSERT INTO `tag` VALUES (1, "sci-fi", "Science Fiction & Fantasy" );
-INSERT INTO `tag` VALUES (2, "e-book", "Electronic books" );
+INSERT INTO `tag` VALUES (1, "sci-fi", "Science Fiction & Fantasy", 0 );
+INSERT INTO `tag` VALUES (2, "e-book", "Electronic books", 0 );
 
 UNLOCK TABLES;
 
@@ -34,6 +35,9 @@ CREATE TABLE `userbook` (
 
 ALTER TABLE userbook ADD CONSTRAINT unique_book UNIQUE(user_id, book_id);
 
+-- Index for paging through a user's books by user_book_id
+CREATE INDEX userbook_user_page ON userbook(user_id, user_book_id);
+
 
 -- TAG MAP
 DROP TABLE IF EXISTS `tagmapping`;
@@ -41,9 +45,13 @@ DROP TABLE IF EXISTS `tagmapping`;
 
 CREATE TABLE `tagmapping` (
   `user_book_id`  int(11) NOT NULL,
-  `tag_id`  int(11) NOT NULL
+  `tag_id`  int(11) NOT NULL,
+  PRIMARY KEY (`user_book_id`, `tag_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 
+-- Index for finding the user books having a tag
+CREATE INDEX tagmapping_tag ON tagmapping(tag_id, user_book_id);
+
 
 
 
@@ -90,6 +98,7 @@ CREATE TABLE `author` (
   `image_medium` varchar(250) DEFAULT NULL,
   `image_large` varchar(250) DEFAULT NULL,
   `ol_key` char(100) DEFAULT NULL,
+  `version` bigint NOT NULL DEFAULT 0,
   PRIMARY KEY (`author_id`)
 ) ENGINE=MyISAM AUTO_INCREMENT=1 DEFAULT CHARSET=latin1;
 
@@ -120,6 +129,24 @@ CREATE TABLE `book` (
   `image_small` varchar(1000) DEFAULT NULL,
   `image_medium` varchar(1000) DEFAULT NULL,
   `image_large` varchar(1000) DEFAULT NULL,
+  `version` bigint NOT NULL DEFAULT 0,
   PRIMARY KEY (`book_id`)
 ) ENGINE=MyISAM AUTO_INCREMENT=808 DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
+
+
+
+--
+-- Table structure for table `book_isbn`
+--
+
+DROP TABLE IF EXISTS `book_isbn`;
+
+-- Normalized ISBN-13 of each book, used to find a book by ISBN
+CREATE TABLE `book_isbn` (
+  `isbn` char(13) NOT NULL,
+  `book_id` int(11) NOT NULL,
+  PRIMARY KEY (`isbn`, `book_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+CREATE INDEX book_isbn_book ON book_isbn(book_id);
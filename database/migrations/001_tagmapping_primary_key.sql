@@ -0,0 +1,23 @@
+-- Adds the primary key and the tag index of the tagmapping table to a
+-- database created before they were part of database/initial/books.sql.
+--
+-- A user book could be given the same tag twice, so the duplicate rows are
+-- removed first. Stop the user_book webservice while this runs.
+
+-- Keep one row of each user book and tag
+CREATE TEMPORARY TABLE tagmapping_distinct AS
+  SELECT DISTINCT user_book_id, tag_id FROM tagmapping;
+
+START TRANSACTION;
+DELETE FROM tagmapping;
+INSERT INTO tagmapping (user_book_id, tag_id)
+  SELECT user_book_id, tag_id FROM tagmapping_distinct;
+COMMIT;
+
+DROP TEMPORARY TABLE tagmapping_distinct;
+
+-- A user book has a tag at most once
+ALTER TABLE tagmapping ADD PRIMARY KEY (user_book_id, tag_id);
+
+-- Index for finding the user books having a tag
+CREATE INDEX tagmapping_tag ON tagmapping(tag_id, user_book_id);
@@ -0,0 +1,8 @@
+-- Adds the userbook_user_page index of the userbook table to a database
+-- created before it was part of database/initial/books.sql.
+--
+-- The user_book webservice pages through a user's books by user_book_id,
+-- which without this index sorts every book of the user.
+
+-- Index for paging through a user's books by user_book_id
+CREATE INDEX userbook_user_page ON userbook(user_id, user_book_id);
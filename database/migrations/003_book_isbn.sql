@@ -0,0 +1,14 @@
+-- Adds the book_isbn table to a database created before it was part of
+-- database/initial/books.sql.
+--
+-- The table is left empty. The book webservice fills an empty book_isbn
+-- table from the isbn column of every book when it starts.
+
+-- Normalized ISBN-13 of each book, used to find a book by ISBN
+CREATE TABLE IF NOT EXISTS `book_isbn` (
+  `isbn` char(13) NOT NULL,
+  `book_id` int(11) NOT NULL,
+  PRIMARY KEY (`isbn`, `book_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+CREATE INDEX book_isbn_book ON book_isbn(book_id);
@@ -0,0 +1,11 @@
+-- Adds the version column of the tag, author and book tables to a database
+-- created before they were part of database/initial/books.sql.
+--
+-- The webservices use it for optimistic locking and for the ETag of a single
+-- entity. Stop the tag, author and book webservices while this runs.
+
+ALTER TABLE tag ADD COLUMN `version` bigint NOT NULL DEFAULT 0;
+
+ALTER TABLE author ADD COLUMN `version` bigint NOT NULL DEFAULT 0;
+
+ALTER TABLE book ADD COLUMN `version` bigint NOT NULL DEFAULT 0;
@@ -1,21 +1,35 @@
 package com.wpff;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import javax.ws.rs.container.DynamicFeature;
 
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 // Jedis
 import com.bendb.dropwizard.redis.JedisBundle;
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.wpff.common.cache.EntityCache;
+import com.wpff.common.count.CountCache;
+import com.wpff.common.db.ReplicaHibernateBundle;
 import com.wpff.common.drop.filter.TokenRequiredFeature;
+import com.wpff.common.index.FuzzyIndex;
+import com.wpff.common.index.SubjectIndex;
 import com.wpff.core.Author;
 // Resources
 import com.wpff.db.AuthorDAO;
+import com.wpff.index.AuthorNameIndex;
 import com.wpff.resources.AuthorHelper;
 import com.wpff.resources.AuthorResource;
 
 import io.dropwizard.Application;
+import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
 import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
@@ -55,6 +69,15 @@ public class AuthorApplication extends Application<AuthorConfiguration> {
     }
   };
 
+  // Hibernate bundle for read only requests, on the read replica
+  private final HibernateBundle<AuthorConfiguration> replicaBundle = new ReplicaHibernateBundle<AuthorConfiguration>(
+      hibernateBundle, Author.class) {
+    @Override
+    public DataSourceFactory getDataSourceFactory(AuthorConfiguration configuration) {
+      return configuration.getReadDataSourceFactory();
+    }
+  };
+
   @Override
   public String getName() {
     return "author";
@@ -65,8 +88,29 @@ public class AuthorApplication extends Application<AuthorConfiguration> {
    */
   @Override
   public void initialize(final Bootstrap<AuthorConfiguration> bootstrap) {
+    // Hibernate second-level cache. Added before the hibernate bundle as the
+    // cache regions must exist before the session factory is built.
+    bootstrap.addBundle(new ConfiguredBundle<AuthorConfiguration>() {
+      @Override
+      public void initialize(Bootstrap<?> bootstrap) {
+      }
+
+      @Override
+      public void run(AuthorConfiguration configuration, Environment environment) {
+        if (configuration.isEntityCacheEnabled()) {
+          EntityCache.registerMetrics(environment.metrics(),
+              EntityCache.start(configuration.getDataSourceFactory().getProperties(),
+                                configuration.getEntityCacheMaximumSize(),
+                                configuration.getEntityCacheTimeToLive().toSeconds(),
+                                configuration.getQueryCacheMaximumSize(),
+                                Author.class.getName()));
+        }
+      }
+    });
+
     // Hibernate
     bootstrap.addBundle(hibernateBundle);
+    bootstrap.addBundle(replicaBundle);
 
     // configuration for migration of databse
     bootstrap.addBundle(new MigrationsBundle<AuthorConfiguration>() {
@@ -103,19 +147,91 @@ public class AuthorApplication extends Application<AuthorConfiguration> {
     JedisPool jedisPool = configuration.getJedisFactory().build(environment);
 
     // author rest endpoint
-    final AuthorDAO authorDao = new AuthorDAO(hibernateBundle.getSessionFactory());
+    final AuthorDAO authorDao = new AuthorDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+
+    // In memory indexes of author names, for suggestions and typo tolerant
+    // matching. Both are kept up to date by AuthorHelper.
+    final AuthorNameIndex nameIndex = new AuthorNameIndex();
+    final FuzzyIndex fuzzyNameIndex = new FuzzyIndex();
+    loadNameIndexes(hibernateBundle.getSessionFactory(), authorDao, nameIndex, fuzzyNameIndex);
+
+    // In memory index of author subjects, kept up to date by AuthorHelper
+    final SubjectIndex subjectIndex = loadSubjectIndex(hibernateBundle.getSessionFactory(), authorDao);
 
     // Helper for UnitOfWork
-    AuthorHelper authorHelper = new UnitOfWorkAwareProxyFactory(hibernateBundle).create(
+    AuthorHelper authorHelper = new UnitOfWorkAwareProxyFactory(hibernateBundle, replicaBundle).create(
         AuthorHelper.class, 
-        new Class[] { AuthorDAO.class }, 
-        new Object[] { authorDao } );
+        new Class[] { AuthorDAO.class, AuthorNameIndex.class, SubjectIndex.class, FuzzyIndex.class }, 
+        new Object[] { authorDao, nameIndex, subjectIndex, fuzzyNameIndex } );
 
-    environment.jersey().register(new AuthorResource(authorHelper));
+    // Cached total counts of the list pages
+    final CountCache countCache = new CountCache(
+        configuration.getCountRefreshInterval().toMilliseconds(),
+        TimeUnit.MILLISECONDS,
+        configuration.getCountCacheMaximumSize());
+    countCache.registerMetrics(environment.metrics());
+
+    environment.jersey().register(new AuthorResource(authorHelper, jedisPool, configuration.getExportFetchSize(), countCache));
 
     // Add a container request filter for securing webservice endpoints.
     DynamicFeature tokenRequired = new TokenRequiredFeature(jedisPool);
     environment.jersey().register(tokenRequired);
   }
 
+  /**
+   * Fill the name indexes from the authors in the database, in one pass over
+   * the names. This runs before any request, so a session is bound here
+   * instead of via UnitOfWork. The primary is read, as a lagging replica could
+   * miss new authors.
+   *
+   * @param sessionFactory Hibernate session factory
+   * @param dao DAO to read the names with
+   * @param nameIndex index to fill for suggestions
+   * @param fuzzyNameIndex index to fill for typo tolerant matching
+   */
+  private void loadNameIndexes(SessionFactory sessionFactory,
+                               AuthorDAO dao,
+                               AuthorNameIndex nameIndex,
+                               FuzzyIndex fuzzyNameIndex) {
+    Map<Integer, String> names = new HashMap<Integer, String>();
+
+    Session session = sessionFactory.openSession();
+    try {
+      ManagedSessionContext.bind(session);
+      dao.forEachName(names::put);
+    } finally {
+      ManagedSessionContext.unbind(sessionFactory);
+      session.close();
+    }
+
+    nameIndex.putAll(names);
+    names.forEach(fuzzyNameIndex::put);
+    LOGGER.info("Loaded " + nameIndex.size() + " author names into the name index and "
+                + fuzzyNameIndex.size() + " into the fuzzy name index");
+  }
+
+  /**
+   * Create the subject index from the authors in the database. See
+   * loadNameIndexes.
+   *
+   * @param sessionFactory Hibernate session factory
+   * @param dao DAO to read the subjects with
+   * @return loaded index
+   */
+  private SubjectIndex loadSubjectIndex(SessionFactory sessionFactory, AuthorDAO dao) {
+    SubjectIndex subjectIndex = new SubjectIndex();
+
+    Session session = sessionFactory.openSession();
+    try {
+      ManagedSessionContext.bind(session);
+      dao.forEachSubject(subjectIndex::put);
+    } finally {
+      ManagedSessionContext.unbind(sessionFactory);
+      session.close();
+    }
+
+    LOGGER.info("Loaded subjects of " + subjectIndex.size() + " authors into the subject index");
+    return subjectIndex;
+  }
+
 }
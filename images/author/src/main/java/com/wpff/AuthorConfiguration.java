@@ -3,13 +3,16 @@ package com.wpff;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableMap;
 import org.hibernate.validator.constraints.NotEmpty;
+import com.wpff.common.db.ReplicaDataSourceFactory;
 
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
 
 import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.util.Collections;
 import java.util.Map;
@@ -44,6 +47,68 @@ public class AuthorConfiguration extends Configuration {
     this.redis = jedisFactory;
   }
 
+  /////////////////////////
+  // HIBERNATE SECOND-LEVEL AND QUERY CACHE
+  @JsonProperty
+  private boolean entityCacheEnabled = true;
+
+  @Min(1)
+  @JsonProperty
+  private long entityCacheMaximumSize = 10000;
+
+  @NotNull
+  @JsonProperty
+  private Duration entityCacheTimeToLive = Duration.hours(1);
+
+  @Min(1)
+  @JsonProperty
+  private long queryCacheMaximumSize = 1000;
+
+  public boolean isEntityCacheEnabled() {
+    return entityCacheEnabled;
+  }
+
+  public long getEntityCacheMaximumSize() {
+    return entityCacheMaximumSize;
+  }
+
+  public Duration getEntityCacheTimeToLive() {
+    return entityCacheTimeToLive;
+  }
+
+  public long getQueryCacheMaximumSize() {
+    return queryCacheMaximumSize;
+  }
+
+  /////////////////////////
+  // EXPORT
+  @Min(1)
+  @JsonProperty
+  private int exportFetchSize = 1000;
+
+  public int getExportFetchSize() {
+    return exportFetchSize;
+  }
+
+  /////////////////////////
+  // TOTAL COUNTS
+  // Cached totals of the list pages, recomputed after the refresh interval
+  @NotNull
+  @JsonProperty
+  private Duration countRefreshInterval = Duration.minutes(5);
+
+  @Min(1)
+  @JsonProperty
+  private int countCacheMaximumSize = 1000;
+
+  public Duration getCountRefreshInterval() {
+    return countRefreshInterval;
+  }
+
+  public int getCountCacheMaximumSize() {
+    return countCacheMaximumSize;
+  }
+
   /////////////////////////
   // DATABASE
   @Valid
@@ -60,6 +125,22 @@ public class AuthorConfiguration extends Configuration {
     this.database = dataSourceFactory;
   }
 
+  /////////////////////////
+  // READ REPLICA
+  // Optional. Read only requests use it, or the session factory of 'database'
+  // when it is not set.
+  @Valid
+  @JsonProperty
+  private ReplicaDataSourceFactory readDatabase;
+
+  public DataSourceFactory getReadDataSourceFactory() {
+    if (readDatabase == null) {
+      return database;
+    }
+    readDatabase.setPrimary(database);
+    return readDatabase;
+  }
+
 
 
 }
@@ -1,18 +1,27 @@
 package com.wpff.core;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 
 /***
  * Represents an author. This is marshalled to/from the database.
+ *
+ * Authors are kept in the second-level cache, see EntityCache.
  */
 @Entity
 @Table(name = "author")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Author implements Comparable {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -45,6 +54,11 @@ public class Author implements Comparable {
   @Column(name = "subjects", unique=false, nullable = true)
   private String subjectsAsCsv;
 
+  // incremented by hibernate on each update, used for the ETag
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version;
+
   //////////////////////////////////
   
   /**
@@ -165,6 +179,20 @@ public class Author implements Comparable {
     this.subjectsAsCsv = subjects;
   }
 
+  /**
+   * @return the version
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param version the version to set
+   */
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   /* (non-Javadoc)
    * @see java.lang.Object#toString()
    */
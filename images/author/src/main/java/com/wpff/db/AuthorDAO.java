@@ -1,27 +1,47 @@
 package com.wpff.db;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.eclipse.jetty.server.Authentication.User;
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import com.wpff.common.db.ReplicaAwareDAO;
+import com.wpff.common.result.PropertyProjection;
 import com.wpff.common.result.Segment;
 import com.wpff.core.Author;
 
-import io.dropwizard.hibernate.AbstractDAO;
-
 
 /**
  * Hibernate Data Access Object for an Author. 
  */
-public class AuthorDAO extends AbstractDAO<Author> {
+public class AuthorDAO extends ReplicaAwareDAO<Author> {
+
+  /**
+   * Reads only the requested properties of authors
+   */
+  private static final PropertyProjection<Author> PROJECTION = new PropertyProjection<Author>(Author::new)
+      .property("id",            (author, value) -> author.setId((Integer) value))
+      .property("name",          (author, value) -> author.setName((String) value))
+      .property("birthDate",     (author, value) -> author.setBirthDate((String) value))
+      .property("olKey",         (author, value) -> author.setOlKey((String) value))
+      .property("subjectsAsCsv", (author, value) -> author.setSubjectsAsCsv((String) value))
+      .property("imageSmall",    (author, value) -> author.setImageSmall((String) value))
+      .property("imageMedium",   (author, value) -> author.setImageMedium((String) value))
+      .property("imageLarge",    (author, value) -> author.setImageLarge((String) value));
 
-  public AuthorDAO(SessionFactory factory) {
-    super(factory);
+  public AuthorDAO(SessionFactory factory, SessionFactory replicaFactory) {
+    super(factory, replicaFactory);
   }
 
   /**
@@ -34,6 +54,25 @@ public class AuthorDAO extends AbstractDAO<Author> {
     return Optional.ofNullable(get(id));
   }
 
+  /**
+   * Return all authors with the incoming IDs. Unknown IDs will be ignored.
+   * The result is kept in the query cache, when read on the primary.
+   *
+   * @param authorIds
+   *          list of author IDs
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Authors
+   * @return List of Authors. May be empty
+   */
+  public List<Author> findById(List<Integer> authorIds, List<String> properties) {
+    Criteria criteria = currentSession()
+        .createCriteria(Author.class)
+        .add(Restrictions.in("id", authorIds))
+        .setCacheable(true);
+    return PROJECTION.list(criteria, properties);
+  }
+
 
   /**
    * Persists a new Author into the backing DB.
@@ -57,60 +96,197 @@ public class AuthorDAO extends AbstractDAO<Author> {
 
   
   	/**
-   * Update an existing author
+   * Update an existing author. The session is flushed so a concurrent update,
+   * caught by the author's version, fails here.
    *
    * @param author
    *          Author to update
    */
 	public void update(Author author) {
 		currentSession().saveOrUpdate(author);
+		currentSession().flush();
 	}
 
 
   /**
-   * Find all matching Authors in the database. Takes a SQL LIKE syntax, e.g.
-   * 'tolk' would return 'J.R.R. Tolkien'
+   * Find all matching Authors in the database. The name takes a SQL LIKE
+   * syntax, e.g. 'tolk' would return 'J.R.R. Tolkien'.
    * 
-   * @param segment
-   *          Offset and limit for query
    * @param authorName
-   *          Name of author, or partial name of author.
+   *          Name of author, or partial name of author
+   * @param segment
+   *          Offset, cursor and limit for query
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Authors
    * @return List of Authors. May be empty
    */
-  public List<Author> findByName(String authorName,
-      Segment segment) {
-    Integer offset = segment.getOffset();
-    Integer limit = segment.getLimit();
-    
+  public List<Author> findByFilter(String authorName,
+      Segment segment,
+      List<String> properties) {
+    Criteria criteria = currentSession()
+        .createCriteria(Author.class)
+        .add(Restrictions.like("name", "%"+ authorName +"%"))
+        .addOrder(Order.asc("id"));
+
+    List<Author> authors = PROJECTION.list(segment.apply(criteria), properties);
+    if (!authors.isEmpty()) {
+      segment.setNext(authors.size(), authors.get(authors.size() - 1).getId());
+    }
+    return authors;
+  }
+
+  /**
+   * Get the IDs of the authors whose name matches, see findByFilter.
+   *
+   * @param authorName
+   *          Name of author, or partial name of author
+   * @return sorted list of author IDs. May be empty
+   */
+  @SuppressWarnings("unchecked")
+  public List<Integer> findIdsByName(String authorName) {
     return currentSession()
         .createCriteria(Author.class)
         .add(Restrictions.like("name", "%"+ authorName +"%"))
-        .setFirstResult(offset)
-        .setMaxResults(limit)
+        .addOrder(Order.asc("id"))
+        .setProjection(Projections.id())
         .list();
   }
 
+  /**
+   * Find the authors of a segment of matching IDs, e.g. from the subject
+   * index. Only the IDs of the segment are sent to the database.
+   *
+   * @param ids
+   *          Sorted list of all the matching author IDs
+   * @param segment
+   *          Offset, cursor and limit into the IDs
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Authors
+   * @return List of Authors, may be empty
+   */
+  public List<Author> findSegment(List<Integer> ids, Segment segment, List<String> properties) {
+    List<Integer> segmentIds = segment.apply(ids);
+    if (segmentIds.isEmpty()) {
+      return new ArrayList<Author>();
+    }
+
+    Criteria criteria = currentSession()
+        .createCriteria(Author.class)
+        .add(Restrictions.in("id", segmentIds))
+        .addOrder(Order.asc("id"));
+    return PROJECTION.list(criteria, properties);
+  }
+
   
     /**
    * Find all authors in the database. 
    *
    * @param segment
-   *          Offset and limit for query
+   *          Offset, cursor and limit for query
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Authors
    * @return List of Authors, may be empty
    */
-  public List<Author> findAll(Segment segment) {
-    Integer offset = segment.getOffset();
-    Integer limit = segment.getLimit();
-
-	  Criteria criteria = currentSession()
+  public List<Author> findAll(Segment segment, List<String> properties) {
+    Criteria criteria = currentSession()
      .createCriteria(Author.class)
-     .setFirstResult(offset)
-     .setMaxResults(limit);
-	    	
-	  return criteria.list();
+     .addOrder(Order.asc("id"));
+
+    List<Author> authors = PROJECTION.list(segment.apply(criteria), properties);
+    if (!authors.isEmpty()) {
+      segment.setNext(authors.size(), authors.get(authors.size() - 1).getId());
+    }
+    return authors;
   }
   
   
+  /**
+   * Pass every author, ordered by id, to the consumer. The authors are read
+   * from the replica with their own stateless session, so this may be called
+   * outside of a UnitOfWork and the authors are never held by a session.
+   *
+   * The authors are read a page at a time, each query seeking past the last id
+   * of the previous page. No statement stays open while the consumer writes
+   * the authors out, and no driver setting is needed to bound the rows held in
+   * memory.
+   *
+   * @param fetchSize
+   *          Number of authors read per query
+   * @param consumer
+   *          Consumer of each author
+   */
+  @SuppressWarnings("unchecked")
+  public void forEachAuthor(int fetchSize, Consumer<Author> consumer) {
+    StatelessSession session = replicaSessionFactory().openStatelessSession();
+    try {
+      int lastId = 0;
+      while (true) {
+        List<Author> page = session
+            .createQuery("from Author a where a.id > :lastId order by a.id")
+            .setParameter("lastId", lastId)
+            .setReadOnly(true)
+            .setMaxResults(fetchSize)
+            .list();
+        page.forEach(consumer);
+        if (page.size() < fetchSize) {
+          break;
+        }
+        lastId = page.get(page.size() - 1).getId();
+      }
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Pass the id and name of every author to the consumer. Rows are scrolled
+   * rather than listed so all names are never held by the session.
+   *
+   * @param consumer
+   *          Consumer of each author id and name
+   */
+  public void forEachName(BiConsumer<Integer, String> consumer) {
+    forEach("select a.id, a.name from Author a", consumer);
+  }
+
+  /**
+   * Pass the id and subject CSV of every author to the consumer. See
+   * forEachName.
+   *
+   * @param consumer
+   *          Consumer of each author id and subject CSV
+   */
+  public void forEachSubject(BiConsumer<Integer, String> consumer) {
+    forEach("select a.id, a.subjectsAsCsv from Author a", consumer);
+  }
+
+  /**
+   * Scroll the rows of an 'id, value' query
+   *
+   * @param query
+   *          HQL query selecting an id and a string
+   * @param consumer
+   *          Consumer of each row
+   */
+  private void forEach(String query, BiConsumer<Integer, String> consumer) {
+    // The MySQL driver only streams rows with a fetch size of MIN_VALUE
+    ScrollableResults results = currentSession()
+        .createQuery(query)
+        .setReadOnly(true)
+        .setFetchSize(Integer.MIN_VALUE)
+        .scroll(ScrollMode.FORWARD_ONLY);
+    try {
+      while (results.next()) {
+        consumer.accept((Integer) results.get(0), (String) results.get(1));
+      }
+    } finally {
+      results.close();
+    }
+  }
+
   /**
    * Get total number of authors
    * 
@@ -125,6 +301,20 @@ public class AuthorDAO extends AbstractDAO<Author> {
 	    return numRows.longValue();
 	}
 
-
+  /**
+   * Get number of authors whose name matches. See findByFilter.
+   *
+   * @param authorName
+   *          Name of author, or partial name of author
+   * @return number of matching authors
+   */
+  public long getNumberOfAuthors(String authorName) {
+    Number numRows = (Number) currentSession()
+        .createCriteria(Author.class)
+        .add(Restrictions.like("name", "%"+ authorName +"%"))
+        .setProjection(Projections.rowCount())
+        .uniqueResult();
+    return numRows.longValue();
+  }
 
 }
@@ -0,0 +1,278 @@
+package com.wpff.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.wpff.common.index.TextNormalizer;
+
+/**
+ * In memory prefix index of author names, used to suggest authors while a
+ * name is typed instead of a SQL "LIKE '%name%'" scan of the author table.
+ *
+ * Names are normalized: lower cased, accents removed and punctuation replaced
+ * by a single space, e.g. 'J.R.R. Tolkien' becomes 'j r r tolkien'. Each name
+ * is held in two sorted arrays:
+ * - the full name, so 'frank h' matches 'Frank Herbert'
+ * - the rest of the name from each later word, so 'herb' and 'r tolk' also
+ * match.
+ *
+ * A prefix is found with a binary search on each array, and the matches are
+ * the run of keys that follow it. Authors whose full name starts with the
+ * prefix come first.
+ *
+ * Readers never lock: each change builds new arrays and publishes them in one
+ * write. Changes are serialized.
+ */
+public class AuthorNameIndex {
+
+  /**
+   * Author ID to name, as given
+   */
+  private final Map<Integer, String> names = new ConcurrentHashMap<Integer, String>();
+
+  /**
+   * Sorted full names
+   */
+  private volatile Keys fullNames = Keys.EMPTY;
+
+  /**
+   * Sorted names from their second, third, ... word
+   */
+  private volatile Keys laterWords = Keys.EMPTY;
+
+  /**
+   * Replace the contents of the index, e.g. when loading all authors at
+   * startup.
+   *
+   * @param authors
+   *          Author ID to name
+   */
+  public synchronized void putAll(Map<Integer, String> authors) {
+    List<Key> full = new ArrayList<Key>();
+    List<Key> later = new ArrayList<Key>();
+
+    names.clear();
+    for (Map.Entry<Integer, String> author : authors.entrySet()) {
+      if (author.getValue() == null) {
+        continue;
+      }
+      names.put(author.getKey(), author.getValue());
+      addKeys(author.getKey(), author.getValue(), full, later);
+    }
+
+    fullNames = Keys.of(full);
+    laterWords = Keys.of(later);
+  }
+
+  /**
+   * Add or replace the name of an author
+   *
+   * @param authorId
+   *          ID of author
+   * @param name
+   *          Name of author. A null name removes the author from the index.
+   */
+  public synchronized void put(int authorId, String name) {
+    List<Key> full = new ArrayList<Key>();
+    List<Key> later = new ArrayList<Key>();
+
+    if (name == null) {
+      names.remove(authorId);
+    } else {
+      names.put(authorId, name);
+      addKeys(authorId, name, full, later);
+    }
+
+    fullNames = fullNames.replace(authorId, full);
+    laterWords = laterWords.replace(authorId, later);
+  }
+
+  /**
+   * Remove an author from the index
+   *
+   * @param authorId
+   *          ID of author
+   */
+  public void remove(int authorId) {
+    put(authorId, null);
+  }
+
+  /**
+   * Suggest authors whose name, or a later word of their name, starts with
+   * the prefix, ignoring case and accents. Authors whose full name starts with
+   * the prefix come first, each group in name order.
+   *
+   * @param prefix
+   *          Start of name
+   * @param k
+   *          Maximum number of authors to return
+   * @return Author ID to name of at most k matches, in order. Empty for a
+   *         blank prefix
+   */
+  public Map<Integer, String> suggest(String prefix, int k) {
+    String normalized = TextNormalizer.normalize(prefix);
+    if (normalized.isEmpty() || (k < 1)) {
+      return Collections.emptyMap();
+    }
+
+    Set<Integer> matches = new HashSet<Integer>();
+    Map<Integer, String> suggestions = new LinkedHashMap<Integer, String>();
+    collect(fullNames, normalized, k, matches, suggestions);
+    collect(laterWords, normalized, k, matches, suggestions);
+    return suggestions;
+  }
+
+  /**
+   * @return number of authors in the index
+   */
+  public int size() {
+    return names.size();
+  }
+
+  /************************************************************************/
+  /** Helper methods **/
+  /************************************************************************/
+
+  /**
+   * Add the keys whose run starts with the prefix, until there are k
+   * suggestions
+   */
+  private void collect(Keys keys, String prefix, int k, Set<Integer> matches, Map<Integer, String> suggestions) {
+    for (int i = keys.first(prefix); (i < keys.size()) && (suggestions.size() < k); i++) {
+      if (!keys.names[i].startsWith(prefix)) {
+        return;
+      }
+
+      int authorId = keys.ids[i];
+      String name = names.get(authorId);
+      if ((name != null) && matches.add(authorId)) {
+        suggestions.put(authorId, name);
+      }
+    }
+  }
+
+  /**
+   * Add the full name key and the key from each later word of a name
+   */
+  private static void addKeys(int authorId, String name, List<Key> full, List<Key> later) {
+    String normalized = TextNormalizer.normalize(name);
+    if (normalized.isEmpty()) {
+      return;
+    }
+
+    full.add(new Key(normalized, authorId));
+    for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+      later.add(new Key(normalized.substring(i + 1), authorId));
+    }
+  }
+
+  /**
+   * A normalized name, or part of one, and its author
+   */
+  private static class Key implements Comparable<Key> {
+    final String name;
+
+    final int authorId;
+
+    Key(String name, int authorId) {
+      this.name = name;
+      this.authorId = authorId;
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      int byName = name.compareTo(other.name);
+      return (byName != 0) ? byName : Integer.compare(authorId, other.authorId);
+    }
+  }
+
+  /**
+   * Immutable keys, sorted by name then author ID, as two parallel arrays
+   */
+  private static class Keys {
+    static final Keys EMPTY = new Keys(new String[0], new int[0]);
+
+    final String[] names;
+
+    final int[] ids;
+
+    Keys(String[] names, int[] ids) {
+      this.names = names;
+      this.ids = ids;
+    }
+
+    static Keys of(List<Key> keys) {
+      Collections.sort(keys);
+      String[] names = new String[keys.size()];
+      int[] ids = new int[keys.size()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = keys.get(i).name;
+        ids[i] = keys.get(i).authorId;
+      }
+      return new Keys(names, ids);
+    }
+
+    int size() {
+      return names.length;
+    }
+
+    /**
+     * @return index of the first name not less than the prefix
+     */
+    int first(String prefix) {
+      int index = Arrays.binarySearch(names, prefix);
+      if (index < 0) {
+        return -(index + 1);
+      }
+      // Equal names are next to each other, find the first
+      while ((index > 0) && names[index - 1].equals(prefix)) {
+        index--;
+      }
+      return index;
+    }
+
+    /**
+     * Copy without the keys of an author, merged with its new keys
+     */
+    Keys replace(int authorId, List<Key> added) {
+      Collections.sort(added);
+
+      int kept = 0;
+      for (int id : ids) {
+        if (id != authorId) {
+          kept++;
+        }
+      }
+
+      String[] newNames = new String[kept + added.size()];
+      int[] newIds = new int[newNames.length];
+      int i = 0;
+      int a = 0;
+      int out = 0;
+      while (out < newNames.length) {
+        if ((i < ids.length) && (ids[i] == authorId)) {
+          i++;
+          continue;
+        }
+
+        boolean takeExisting = (a == added.size())
+            || ((i < ids.length) && (new Key(names[i], ids[i]).compareTo(added.get(a)) <= 0));
+        if (takeExisting) {
+          newNames[out] = names[i];
+          newIds[out++] = ids[i++];
+        } else {
+          newNames[out] = added.get(a).name;
+          newIds[out++] = added.get(a++).authorId;
+        }
+      }
+      return new Keys(newNames, newIds);
+    }
+  }
+}
@@ -2,14 +2,20 @@ package com.wpff.resources;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.ws.rs.NotFoundException;
 
 import org.apache.commons.beanutils.BeanUtils;
 
+import com.wpff.common.db.ReplicaHibernateBundle;
+import com.wpff.common.index.FuzzyIndex;
+import com.wpff.common.index.SubjectIndex;
 import com.wpff.common.result.Segment;
 import com.wpff.core.Author;
 import com.wpff.db.AuthorDAO;
+import com.wpff.index.AuthorNameIndex;
 import com.wpff.query.AuthorQuery;
 
 import io.dropwizard.hibernate.UnitOfWork;
@@ -18,14 +24,41 @@ public class AuthorHelper {
   
   private final AuthorDAO authorDAO;
 
+  /**
+   * Prefix index of author names, kept up to date on each change
+   */
+  private final AuthorNameIndex nameIndex;
+
+  /**
+   * Index of author subjects, kept up to date on each change
+   */
+  private final SubjectIndex subjectIndex;
+
+  /**
+   * Typo tolerant index of author names, kept up to date on each change
+   */
+  private final FuzzyIndex fuzzyNameIndex;
+
   /**
    * Create new helper
    * 
    * @param authorDao
    *          DAO used by helper
+   * @param nameIndex
+   *          Index of author names, already loaded
+   * @param subjectIndex
+   *          Index of author subjects, already loaded
+   * @param fuzzyNameIndex
+   *          Typo tolerant index of author names, already loaded
    */
-  public AuthorHelper(AuthorDAO authorDao) {
+  public AuthorHelper(AuthorDAO authorDao,
+                      AuthorNameIndex nameIndex,
+                      SubjectIndex subjectIndex,
+                      FuzzyIndex fuzzyNameIndex) {
     this.authorDAO= authorDao;
+    this.nameIndex = nameIndex;
+    this.subjectIndex = subjectIndex;
+    this.fuzzyNameIndex = fuzzyNameIndex;
   }
   
   /**
@@ -47,6 +80,14 @@ public class AuthorHelper {
   }
  
 
+  /**
+   * @return true if the read only methods use a replica, which may lag
+   *         behind the primary
+   */
+  boolean hasReplica() {
+    return authorDAO.hasReplica();
+  }
+
   /**
    * Look for author by incoming id. If returned Author is null, throw 404.
    * 
@@ -54,44 +95,157 @@ public class AuthorHelper {
    *          ID of author to look for
    * @return Author in database
    */
-  @UnitOfWork
+  // On the primary, whose second-level and query cache answer lookups by id
+  @UnitOfWork(readOnly = true)
   Author findById(int id) {
     return authorDAO.findById(id).orElseThrow(() -> new NotFoundException("No author by id " + id));
   }
   
+  /**
+   * Get all authors matching the incoming IDs. Unknown IDs are ignored.
+   * 
+   * @param authorIds
+   *          list of author IDs
+   * @param properties
+   *          Properties to read. Null to read whole Authors
+   * @return list of Authors
+   */
+  // On the primary, whose second-level and query cache answer lookups by id
+  @UnitOfWork(readOnly = true)
+  List<Author> findById(List<Integer> authorIds, List<String> properties) {
+    return authorDAO.findById(authorIds, properties);
+  }
+
    /**
+   * Pass every author to the consumer. No UnitOfWork is needed, the DAO reads
+   * the authors with its own session.
+   *
+   * @param fetchSize
+   *          Number of rows fetched at a time
+   * @param consumer
+   *          Consumer of each author
+   */
+  void forEachAuthor(int fetchSize, Consumer<Author> consumer) {
+    authorDAO.forEachAuthor(fetchSize, consumer);
+  }
+
+  /**
+   * Suggest authors by the start of their name. No UnitOfWork is needed, the
+   * names are in memory.
+   *
+   * @param prefix
+   *          Start of the name, or of a later word of the name
+   * @param k
+   *          Maximum number of authors to return
+   * @return Author ID to name, best matches first
+   */
+  Map<Integer, String> suggest(String prefix, int k) {
+    return nameIndex.suggest(prefix, k);
+  }
+
+  /**
+   * Find authors by subject. No UnitOfWork is needed, the subjects are in
+   * memory.
+   *
+   * @param subjects
+   *          Subjects to look for
+   * @param matchAll
+   *          True if an author must have all of the subjects, false for any
+   * @return sorted IDs of the matching authors
+   */
+  List<Integer> findBySubject(List<String> subjects, boolean matchAll) {
+    return subjectIndex.find(subjects, matchAll);
+  }
+
+  /**
+   * Find authors whose name is close to the query, allowing for typos. No
+   * UnitOfWork is needed, the names are in memory.
+   *
+   * @param name
+   *          Name of author, possibly misspelled
+   * @param max
+   *          Maximum number of authors to return
+   * @return IDs of the matching authors, most similar first
+   */
+  List<Integer> findByFuzzyName(String name, int max) {
+    return fuzzyNameIndex.search(name, max);
+  }
+
+  /**
    * Get all authors
    * 
    * @param desiredSegment
    *          offset and limit for the query
+   * @param properties
+   *          Properties to read. Null to read whole Authors
    * @return list of Authors
    */
-  @UnitOfWork
-  List<Author> findAll(Segment desiredSegment) {
-    return authorDAO.findAll(desiredSegment);
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  List<Author> findAll(Segment desiredSegment, List<String> properties) {
+    return authorDAO.findAll(desiredSegment, properties);
   }
   
   /**
    * Get total number of authors
    * @return Number of authors
    */
-  	@UnitOfWork
+  	@UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
   long getTotalNumberAuthors() {
   	  return authorDAO.getNumberOfAuthors();
   }
 
+  /**
+   * Get number of authors matching a name
+   * @param authorQuery author name, or partial name
+   * @return Number of matching authors
+   */
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  long getTotalNumberAuthors(String authorQuery) {
+    return authorDAO.getNumberOfAuthors(authorQuery);
+  }
+
   /**
    * Get set of Authors by name
    * 
    * @param authorQuery
-   *          author name
+   *          author name, or partial name
    * @param desiredSegment
    *          offset and limit for the query  
-   * @returnlist of Authors
+   * @param properties
+   *          Properties to read. Null to read whole Authors
+   * @return list of Authors
    */
-  @UnitOfWork
-  List<Author> findByName(String authorQuery, Segment desiredSegment) {
-    return authorDAO.findByName(authorQuery, desiredSegment);
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  List<Author> findByFilter(String authorQuery, Segment desiredSegment, List<String> properties) {
+    return authorDAO.findByFilter(authorQuery, desiredSegment, properties);
+  }
+
+  /**
+   * Get the IDs of the authors matching a name
+   * 
+   * @param authorQuery
+   *          author name, or partial name
+   * @return sorted list of author IDs
+   */
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  List<Integer> findIdsByName(String authorQuery) {
+    return authorDAO.findIdsByName(authorQuery);
+  }
+
+  /**
+   * Get the Authors of a segment of matching IDs
+   * 
+   * @param ids
+   *          Sorted list of all the matching author IDs
+   * @param desiredSegment
+   *          offset, cursor and limit into the IDs
+   * @param properties
+   *          Properties to read. Null to read whole Authors
+   * @return list of Authors
+   */
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  List<Author> findSegment(List<Integer> ids, Segment desiredSegment, List<String> properties) {
+    return authorDAO.findSegment(ids, desiredSegment, properties);
   }
 
   /**
@@ -105,6 +259,7 @@ public class AuthorHelper {
   Author createAuthor(Author authorToCreate) {
     Author author = this.authorDAO.create(authorToCreate);
     System.out.println("Created author: " + author.getId());
+    indexAfterCommit(author);
     return author;
   }
   
@@ -115,14 +270,18 @@ public class AuthorHelper {
    *          Author to update in database
    * @param authorId
    *          Author's ID
+   * @param precondition
+   *          Check of the existing author, before it is changed. Throws to stop
+   *          the update
    * @return Updated author from database
    * @throws InvocationTargetException
    * @throws IllegalAccessException
    */
   @UnitOfWork
-  Author updateAuthor(AuthorQuery authorBean, int authorId) 
+  Author updateAuthor(AuthorQuery authorBean, int authorId, Consumer<Author> precondition) 
       throws IllegalAccessException, InvocationTargetException {
     Author authorToUpdate  = authorDAO.findById(authorId).orElseThrow(() -> new NotFoundException("No author by id " + authorId));
+    precondition.accept(authorToUpdate);
     
     // Copy over non null values
     copyProperty(authorToUpdate, "name", authorBean.getName());
@@ -136,6 +295,7 @@ public class AuthorHelper {
     authorToUpdate.setSubjectsAsCsv(convertListToCsv(authorBean.getSubjects()));
     
     this.authorDAO.update(authorToUpdate);    
+    indexAfterCommit(authorToUpdate);
     return authorToUpdate;
   }
 
@@ -148,8 +308,32 @@ public class AuthorHelper {
    */
   @UnitOfWork
   void deleteAuthor(int authorId) {
-    Author deleteMe = this.findById(authorId);
+    Author deleteMe = authorDAO.findById(authorId).orElseThrow(() -> new NotFoundException("No author by id " + authorId));
     this.authorDAO.delete(deleteMe);
+    this.authorDAO.afterCommit(() -> {
+      nameIndex.remove(authorId);
+      fuzzyNameIndex.remove(authorId);
+      subjectIndex.remove(authorId);
+    });
+  }
+
+  /**
+   * Put an author's name and subjects in the indexes once the current
+   * transaction has committed, so an author that is rolled back is never
+   * found. The values are taken now, as the entity may change later.
+   * 
+   * @param author
+   *          Author created or updated in the current transaction
+   */
+  private void indexAfterCommit(Author author) {
+    final int authorId = author.getId();
+    final String name = author.getName();
+    final String subjects = author.getSubjectsAsCsv();
+    this.authorDAO.afterCommit(() -> {
+      nameIndex.put(authorId, name);
+      fuzzyNameIndex.put(authorId, name);
+      subjectIndex.put(authorId, subjects);
+    });
   }
   
   
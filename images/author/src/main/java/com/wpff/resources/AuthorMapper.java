@@ -0,0 +1,146 @@
+package com.wpff.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wpff.common.index.SubjectIndex;
+import com.wpff.common.result.FieldSet;
+import com.wpff.core.Author;
+import com.wpff.result.AuthorResult;
+
+/**
+ * Maps an Author from the DB into an AuthorResult for return to caller.
+ */
+public final class AuthorMapper {
+
+  /**
+   * Fields of an AuthorResult that may be requested
+   */
+  static final List<String> FIELDS = Arrays.asList(
+      "id", "name", "birthDate", "olKey", "subjects", "imageSmall", "imageMedium", "imageLarge");
+
+  /**
+   * Fields of the 'summary' view
+   */
+  static final List<String> SUMMARY = Arrays.asList("id", "name", "imageSmall");
+
+  /**
+   * Author property read from the database for each field
+   */
+  private static final Map<String, String> PROPERTIES = new HashMap<String, String>();
+  static {
+    PROPERTIES.put("id", "id");
+    PROPERTIES.put("name", "name");
+    PROPERTIES.put("birthDate", "birthDate");
+    PROPERTIES.put("olKey", "olKey");
+    PROPERTIES.put("subjects", "subjectsAsCsv");
+    PROPERTIES.put("imageSmall", "imageSmall");
+    PROPERTIES.put("imageMedium", "imageMedium");
+    PROPERTIES.put("imageLarge", "imageLarge");
+  }
+
+  private AuthorMapper() {
+  }
+
+  /**
+   * Parse the 'fields' and 'view' query params. The id is always returned.
+   *
+   * @param fields
+   *          csv of fields. May be null
+   * @param view
+   *          'summary' or 'full'. May be null
+   * @return the requested fields
+   */
+  static FieldSet parseFields(String fields, String view) {
+    return FieldSet.parse(fields, view, FIELDS, SUMMARY, "id");
+  }
+
+  /**
+   * Get the Author properties to read for the requested fields
+   *
+   * @param fields
+   *          Requested fields
+   * @return list of properties, or null to read the whole Author
+   */
+  static List<String> properties(FieldSet fields) {
+    if (fields.isAll()) {
+      return null;
+    }
+
+    List<String> properties = new ArrayList<String>();
+    for (String field : fields.getFields()) {
+      properties.add(PROPERTIES.get(field));
+    }
+    return properties;
+  }
+
+  /**
+   * Convert an Author from the DB into an AuthorResult
+   *
+   * @param dbAuthor
+   *          Author in DB
+   * @return Author bean
+   */
+  public static AuthorResult toResult(Author dbAuthor) {
+    AuthorResult result = new AuthorResult();
+
+    result.setId(dbAuthor.getId());
+    result.setName(dbAuthor.getName());
+    result.setBirthDate(dbAuthor.getBirthDate());
+    result.setOlKey(dbAuthor.getOlKey());
+    result.setImageSmall(dbAuthor.getImageSmall());
+    result.setImageMedium(dbAuthor.getImageMedium());
+    result.setImageLarge(dbAuthor.getImageLarge());
+
+    // dbAuthor's 'subjects' is a csv. Convert to a list
+    result.setSubjects(SubjectIndex.split(dbAuthor.getSubjectsAsCsv()));
+
+    return result;
+  }
+
+  /**
+   * Convert an Author from the DB into an AuthorResult with only the requested
+   * fields. The Author may only have the properties for those fields.
+   *
+   * @param dbAuthor
+   *          Author in DB
+   * @param fields
+   *          Requested fields
+   * @return Author bean
+   */
+  public static AuthorResult toResult(Author dbAuthor, FieldSet fields) {
+    if (fields.isAll()) {
+      return toResult(dbAuthor);
+    }
+
+    AuthorResult result = new AuthorResult();
+
+    result.setId(dbAuthor.getId());
+    if (fields.contains("name")) {
+      result.setName(dbAuthor.getName());
+    }
+    if (fields.contains("birthDate")) {
+      result.setBirthDate(dbAuthor.getBirthDate());
+    }
+    if (fields.contains("olKey")) {
+      result.setOlKey(dbAuthor.getOlKey());
+    }
+    if (fields.contains("imageSmall")) {
+      result.setImageSmall(dbAuthor.getImageSmall());
+    }
+    if (fields.contains("imageMedium")) {
+      result.setImageMedium(dbAuthor.getImageMedium());
+    }
+    if (fields.contains("imageLarge")) {
+      result.setImageLarge(dbAuthor.getImageLarge());
+    }
+    if (fields.contains("subjects")) {
+      result.setSubjects(SubjectIndex.split(dbAuthor.getSubjectsAsCsv()));
+    }
+
+    return result;
+  }
+}
@@ -1,5 +1,6 @@
 package com.wpff.result;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.wpff.query.AuthorQuery;
 
 /**
@@ -7,7 +8,9 @@ import com.wpff.query.AuthorQuery;
  * instead of the core.Author class so we can control the structure of the
  * format more closely.
  *
+ * Fields that are null, e.g. not requested via 'fields', are left out.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class AuthorResult extends AuthorQuery {
   private int id;
 
@@ -148,9 +148,11 @@ public class AuthResource {
            
       // hset user:token name "user name"
       // hset user:token group "user group"
+      // hset user:token userId "user id"
       String redisHashName = "user:" + token;
       jedis.hset(redisHashName, "name", userInDatabase.getName());
       jedis.hset(redisHashName, "group", userInDatabase.getUserGroup());
+      jedis.hset(redisHashName, "userId", String.valueOf(userInDatabase.getId()));
       jedis.expire(redisHashName, 60 * 60 * 24);
       
       // Create Bearer bean to return to user
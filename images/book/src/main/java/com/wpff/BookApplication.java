@@ -1,22 +1,44 @@
 package com.wpff;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import javax.ws.rs.container.DynamicFeature;
 
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 // Jedis
 import com.bendb.dropwizard.redis.JedisBundle;
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.wpff.cache.AuthorNameCache;
+import com.wpff.common.cache.CacheInvalidator;
+import com.wpff.common.cache.EntityCache;
+import com.wpff.common.count.CountCache;
+import com.wpff.common.db.ReplicaHibernateBundle;
 import com.wpff.common.drop.filter.TokenRequiredFeature;
+import com.wpff.common.http.ServiceClient;
+import com.wpff.common.index.FuzzyIndex;
+import com.wpff.common.index.SubjectIndex;
 import com.wpff.core.Book;
+import com.wpff.core.BookIsbn;
 // Resources
 import com.wpff.db.BookDAO;
+import com.wpff.db.BookIsbnDAO;
+import com.wpff.index.TitleIndex;
 import com.wpff.resources.BookResource;
 
 import io.dropwizard.Application;
+import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.migrations.MigrationsBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
@@ -44,13 +66,22 @@ public class BookApplication extends Application<BookConfiguration> {
 
   // Create hibernate bundle
   private final HibernateBundle<BookConfiguration> hibernateBundle =
-      new HibernateBundle<BookConfiguration>(Book.class) {
+      new HibernateBundle<BookConfiguration>(Book.class, BookIsbn.class) {
     @Override
     public DataSourceFactory getDataSourceFactory(BookConfiguration configuration) {
       return configuration.getDataSourceFactory();
     }
   };
 
+  // Hibernate bundle for read only requests, on the read replica
+  private final HibernateBundle<BookConfiguration> replicaBundle =
+      new ReplicaHibernateBundle<BookConfiguration>(hibernateBundle, Book.class, BookIsbn.class) {
+    @Override
+    public DataSourceFactory getDataSourceFactory(BookConfiguration configuration) {
+      return configuration.getReadDataSourceFactory();
+    }
+  };
+
   @Override
     public String getName() {
     return "book";
@@ -62,8 +93,29 @@ public class BookApplication extends Application<BookConfiguration> {
   @Override
     public void initialize(final Bootstrap<BookConfiguration> bootstrap) {
 
+    // Hibernate second-level cache. Added before the hibernate bundle as the
+    // cache regions must exist before the session factory is built.
+    bootstrap.addBundle(new ConfiguredBundle<BookConfiguration>() {
+      @Override
+      public void initialize(Bootstrap<?> bootstrap) {
+      }
+
+      @Override
+      public void run(BookConfiguration configuration, Environment environment) {
+        if (configuration.isEntityCacheEnabled()) {
+          EntityCache.registerMetrics(environment.metrics(),
+              EntityCache.start(configuration.getDataSourceFactory().getProperties(),
+                                configuration.getEntityCacheMaximumSize(),
+                                configuration.getEntityCacheTimeToLive().toSeconds(),
+                                configuration.getQueryCacheMaximumSize(),
+                                Book.class.getName()));
+        }
+      }
+    });
+
     // Hibernate
     bootstrap.addBundle(hibernateBundle);
+    bootstrap.addBundle(replicaBundle);
 
     // Jedis for Redis
     bootstrap.addBundle(new JedisBundle<BookConfiguration>() {
@@ -100,9 +152,61 @@ public class BookApplication extends Application<BookConfiguration> {
     // Set up Jedis. Currently JedisFactory doesn't inject into a filter, just Resources.
     JedisPool jedisPool = configuration.getJedisFactory().build(environment);
 
+    // Shared client for calling the other webservices. Closed when the application stops.
+    final ServiceClient serviceClient = new ServiceClient();
+    environment.lifecycle().manage(new Managed() {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() throws Exception {
+          serviceClient.close();
+        }
+      });
+
+    // Local cache of author names, invalidated by the 'author' webservice
+    final AuthorNameCache authorNameCache = new AuthorNameCache(
+        configuration.getAuthorCacheMaximumSize(),
+        configuration.getAuthorCacheTimeToLive().toMilliseconds(),
+        TimeUnit.MILLISECONDS);
+    authorNameCache.registerMetrics(environment.metrics());
+    CacheInvalidator.subscribe(jedisPool, CacheInvalidator.AUTHOR_CHANNEL, authorNameCache);
+
     // book rest endpoint
-    final BookDAO dao = new BookDAO(hibernateBundle.getSessionFactory());
-    environment.jersey().register(new BookResource(dao));
+    final BookDAO dao = new BookDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+
+    // In memory indexes of book titles, for substring and typo tolerant
+    // matching. Both are kept up to date by BookResource.
+    final TitleIndex titleIndex = new TitleIndex();
+    final FuzzyIndex fuzzyTitleIndex = new FuzzyIndex();
+    loadTitleIndexes(hibernateBundle.getSessionFactory(), dao, titleIndex, fuzzyTitleIndex);
+
+    // In memory index of book subjects, kept up to date by BookResource
+    final SubjectIndex subjectIndex = loadSubjectIndex(hibernateBundle.getSessionFactory(), dao);
+
+    // ISBN to book table, kept up to date by BookResource
+    final BookIsbnDAO isbnDAO = new BookIsbnDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+    loadIsbns(hibernateBundle.getSessionFactory(), dao, isbnDAO);
+
+    // Cached total counts of the list pages
+    final CountCache countCache = new CountCache(
+        configuration.getCountRefreshInterval().toMilliseconds(),
+        TimeUnit.MILLISECONDS,
+        configuration.getCountCacheMaximumSize());
+    countCache.registerMetrics(environment.metrics());
+
+    environment.jersey().register(new BookResource(dao,
+                                                  isbnDAO,
+                                                  serviceClient,
+                                                  authorNameCache,
+                                                  titleIndex,
+                                                  subjectIndex,
+                                                  fuzzyTitleIndex,
+                                                  configuration.getImportChunkSize(),
+                                                  configuration.getExportFetchSize(),
+                                                  jedisPool,
+                                                  countCache));
 
     // Add a container request filter for securing webservice endpoints.
     DynamicFeature tokenRequired = new TokenRequiredFeature(jedisPool) ;
@@ -110,4 +214,93 @@ public class BookApplication extends Application<BookConfiguration> {
 
   }
 
+  /**
+   * Fill the title indexes from the books in the database, in one pass over
+   * the titles. This runs before any request, so a session is bound here
+   * instead of via UnitOfWork.
+   *
+   * @param sessionFactory Hibernate session factory
+   * @param dao DAO to read the titles with
+   * @param titleIndex index to fill for substring matching
+   * @param fuzzyTitleIndex index to fill for typo tolerant matching
+   */
+  private void loadTitleIndexes(SessionFactory sessionFactory,
+                                BookDAO dao,
+                                TitleIndex titleIndex,
+                                FuzzyIndex fuzzyTitleIndex) {
+    Session session = sessionFactory.openSession();
+    try {
+      ManagedSessionContext.bind(session);
+      dao.forEachTitle((id, title) -> {
+          titleIndex.put(id, title);
+          fuzzyTitleIndex.put(id, title);
+        });
+    } finally {
+      ManagedSessionContext.unbind(sessionFactory);
+      session.close();
+    }
+
+    LOGGER.info("Loaded " + titleIndex.size() + " book titles into the title index and "
+                + fuzzyTitleIndex.size() + " into the fuzzy title index");
+  }
+
+  /**
+   * Create the subject index from the books in the database. See
+   * loadTitleIndexes.
+   *
+   * @param sessionFactory Hibernate session factory
+   * @param dao DAO to read the subjects with
+   * @return loaded index
+   */
+  private SubjectIndex loadSubjectIndex(SessionFactory sessionFactory, BookDAO dao) {
+    SubjectIndex subjectIndex = new SubjectIndex();
+
+    Session session = sessionFactory.openSession();
+    try {
+      ManagedSessionContext.bind(session);
+      dao.forEachSubject(subjectIndex::put);
+    } finally {
+      ManagedSessionContext.unbind(sessionFactory);
+      session.close();
+    }
+
+    LOGGER.info("Loaded subjects of " + subjectIndex.size() + " books into the subject index");
+    return subjectIndex;
+  }
+
+  /**
+   * Fill the book_isbn table from the isbn CSV of each book, when the table is
+   * empty. This covers books that were added before the table existed.
+   *
+   * @param sessionFactory Hibernate session factory
+   * @param dao DAO to read the books with
+   * @param isbnDAO DAO to write the ISBNs with
+   */
+  private void loadIsbns(SessionFactory sessionFactory, BookDAO dao, BookIsbnDAO isbnDAO) {
+    Session session = sessionFactory.openSession();
+    try {
+      ManagedSessionContext.bind(session);
+      if (isbnDAO.getNumberOfIsbns() > 0) {
+        return;
+      }
+
+      // Read everything first, the connection can't write while streaming rows
+      Map<Integer, String> isbnCsvs = new LinkedHashMap<Integer, String>();
+      dao.forEachIsbn(isbnCsvs::put);
+
+      Transaction transaction = session.beginTransaction();
+      for (Map.Entry<Integer, String> entry : isbnCsvs.entrySet()) {
+        if (entry.getValue() != null) {
+          isbnDAO.replace(entry.getKey(), Arrays.asList(entry.getValue().split("\\s*,\\s*")));
+        }
+      }
+      transaction.commit();
+
+      LOGGER.info("Loaded ISBNs of " + isbnCsvs.size() + " books into the book_isbn table");
+    } finally {
+      ManagedSessionContext.unbind(sessionFactory);
+      session.close();
+    }
+  }
+
 }
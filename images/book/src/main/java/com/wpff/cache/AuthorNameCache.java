@@ -0,0 +1,113 @@
+package com.wpff.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wpff.common.cache.CacheInvalidator;
+
+/**
+ * Local cache of author names, indexed by author id.
+ *
+ * Entries are evicted when the cache is full or when they reach their time to
+ * live. Entries are also invalidated when the 'author' webservice publishes a
+ * change to an author, see CacheInvalidator.
+ */
+public class AuthorNameCache implements CacheInvalidator.Listener {
+
+  /**
+   * Cache of author id to author name
+   */
+  private final Cache<Integer, String> cache;
+
+  /**
+   * Create new cache
+   *
+   * @param maximumSize
+   *          Max number of author names to hold
+   * @param timeToLive
+   *          Time to live of each entry
+   * @param unit
+   *          Unit of timeToLive
+   */
+  public AuthorNameCache(long maximumSize, long timeToLive, TimeUnit unit) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(timeToLive, unit)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Get the cached names for the incoming author ids.
+   *
+   * @param authorIds
+   *          IDs of authors
+   * @return Map of author names, indexed by author id. Authors not in the
+   *         cache are not in the map.
+   */
+  public Map<Integer, String> getAll(Collection<Integer> authorIds) {
+    return cache.getAllPresent(authorIds);
+  }
+
+  /**
+   * Add author names to the cache
+   *
+   * @param authorNames
+   *          Map of author names, indexed by author id
+   */
+  public void putAll(Map<Integer, String> authorNames) {
+    cache.putAll(authorNames);
+  }
+
+  @Override
+  public void invalidate(String key) {
+    try {
+      cache.invalidate(Integer.valueOf(key));
+    } catch (NumberFormatException e) {
+      System.out.println("Ignoring invalidation of unknown author id: " + key);
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Register hit, miss, eviction and size gauges for the cache.
+   *
+   * @param metrics
+   *          Registry to add gauges to
+   */
+  public void registerMetrics(MetricRegistry metrics) {
+    metrics.register(MetricRegistry.name("authorNameCache", "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return cache.stats().hitCount();
+      }
+    });
+    metrics.register(MetricRegistry.name("authorNameCache", "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return cache.stats().missCount();
+      }
+    });
+    metrics.register(MetricRegistry.name("authorNameCache", "evictions"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return cache.stats().evictionCount();
+      }
+    });
+    metrics.register(MetricRegistry.name("authorNameCache", "size"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return cache.size();
+      }
+    });
+  }
+}
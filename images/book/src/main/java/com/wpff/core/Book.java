@@ -1,17 +1,26 @@
 package com.wpff.core;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /***
  * Represents a book. This is marshalled to/from the database.
+ *
+ * Books are kept in the second-level cache, see EntityCache.
  */
 @Entity
 @Table(name = "book")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Book implements Comparable {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -53,6 +62,11 @@ public class Book implements Comparable {
   // large image URL
   @Column(name = "image_large", unique=false, nullable = true)
   private String imageLarge;
+
+  // incremented by hibernate on each update, used for the ETag
+  @Version
+  @Column(name = "version", nullable = false)
+  private long version;
   
   //////////////////////////////////////////////////
 
@@ -290,6 +304,20 @@ public class Book implements Comparable {
     this.subject = subject;
   }
 
+  /**
+   * @return the version
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param version the version to set
+   */
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   /* (non-Javadoc)
    * @see java.lang.Object#toString()
    */
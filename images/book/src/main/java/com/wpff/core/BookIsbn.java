@@ -0,0 +1,117 @@
+package com.wpff.core;
+
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Maps an ISBN to a Book. Uses the 'book_isbn' table, which is keyed by isbn
+ * so a book can be found by ISBN with a single index lookup.
+ *
+ * ISBNs are stored in their normalized ISBN-13 form, see normalize.
+ */
+@Entity
+@Table(name = "book_isbn")
+public class BookIsbn implements java.io.Serializable {
+
+  private static final long serialVersionUID = 4436210839710853326L;
+
+  /**
+   * Normalized ISBN-13
+   */
+  @Id
+  @Column(name = "isbn", nullable = false)
+  private String isbn;
+
+  /**
+   * Book ID
+   */
+  @Id
+  @Column(name = "book_id", nullable = false)
+  private int bookId;
+
+  /**
+   * Default constructor
+   */
+  public BookIsbn() {
+  }
+
+  public BookIsbn(String isbn, int bookId) {
+    this.isbn = isbn;
+    this.bookId = bookId;
+  }
+
+  /**
+   * Normalize an ISBN-10 or ISBN-13. Hyphens and spaces are removed and an
+   * ISBN-10 is converted into its ISBN-13 form (prefix '978' and a new check
+   * digit), so both forms of the same ISBN have the same key.
+   *
+   * @param isbn
+   *          ISBN to normalize
+   * @return normalized ISBN-13, or null if the incoming value is not an ISBN
+   */
+  public static String normalize(String isbn) {
+    if (isbn == null) {
+      return null;
+    }
+
+    String value = isbn.replaceAll("[\\s-]", "").toUpperCase();
+    if (value.matches("\\d{13}")) {
+      return value;
+    }
+    if (!value.matches("\\d{9}[\\dX]")) {
+      return null;
+    }
+
+    // ISBN-10 to ISBN-13. The ISBN-10 check digit is dropped.
+    String digits = "978" + value.substring(0, 9);
+    int sum = 0;
+    for (int i = 0; i < digits.length(); i++) {
+      int digit = digits.charAt(i) - '0';
+      sum += (i % 2 == 0) ? digit : digit * 3;
+    }
+    return digits + ((10 - (sum % 10)) % 10);
+  }
+
+  public String getIsbn() {
+    return isbn;
+  }
+
+  public void setIsbn(String isbn) {
+    this.isbn = isbn;
+  }
+
+  public int getBookId() {
+    return bookId;
+  }
+
+  public void setBookId(int bookId) {
+    this.bookId = bookId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BookIsbn)) {
+      return false;
+    }
+
+    final BookIsbn that = (BookIsbn) o;
+    return Objects.equals(this.isbn, that.isbn) && (this.bookId == that.bookId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.isbn, this.bookId);
+  }
+
+  @Override
+  public String toString() {
+    return "BookIsbn [isbn=" + isbn + ", bookId=" + bookId + "]";
+  }
+}
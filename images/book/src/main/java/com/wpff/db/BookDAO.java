@@ -1,26 +1,64 @@
 package com.wpff.db;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Junction;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import com.wpff.common.db.ReplicaAwareDAO;
+import com.wpff.common.result.PropertyProjection;
 import com.wpff.common.result.Segment;
 import com.wpff.core.Book;
 
-import io.dropwizard.hibernate.AbstractDAO;
-
 
 /**
  * Hibernate Data Access Object for an book Book. 
  */
-public class BookDAO extends AbstractDAO<Book> {
+public class BookDAO extends ReplicaAwareDAO<Book> {
+
+  /**
+   * Reads only the requested properties of books
+   */
+  private static final PropertyProjection<Book> PROJECTION = new PropertyProjection<Book>(Book::new)
+      .property("id",          (book, value) -> book.setId((Integer) value))
+      .property("authorId",    (book, value) -> book.setAuthorId((Integer) value))
+      .property("year",        (book, value) -> book.setYear((Integer) value))
+      .property("title",       (book, value) -> book.setTitle((String) value))
+      .property("description", (book, value) -> book.setDescription((String) value))
+      .property("isbn",        (book, value) -> book.setIsbn((String) value))
+      .property("subject",     (book, value) -> book.setSubject((String) value))
+      .property("olWorks",     (book, value) -> book.setOlWorks((String) value))
+      .property("imageSmall",  (book, value) -> book.setImageSmall((String) value))
+      .property("imageMedium", (book, value) -> book.setImageMedium((String) value))
+      .property("imageLarge",  (book, value) -> book.setImageLarge((String) value));
+
+  /**
+   * Used to evict the query cache
+   */
+  private final SessionFactory sessionFactory;
 
-  public BookDAO(SessionFactory factory) {
-    super(factory);
+  public BookDAO(SessionFactory factory, SessionFactory replicaFactory) {
+    super(factory, replicaFactory);
+    this.sessionFactory = factory;
   }
 
   /**
@@ -50,20 +88,38 @@ public class BookDAO extends AbstractDAO<Book> {
 
   /**
    * Return all books with the incoming IDs. Unknown IDs will be ignored.
+   * The result is kept in the query cache, when read on the primary.
    *
    * @param bookIds list of book IDs
    * @return List of Books. May be empty
    */
   public List<Book> findById(List<Integer> bookIds) {
-    return currentSession()
+    return findById(bookIds, null);
+  }
+
+  /**
+   * Return all books with the incoming IDs. Unknown IDs will be ignored.
+   * The result is kept in the query cache, when read on the primary.
+   *
+   * @param bookIds
+   *          list of book IDs
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Books
+   * @return List of Books. May be empty
+   */
+  public List<Book> findById(List<Integer> bookIds, List<String> properties) {
+    Criteria criteria = currentSession()
         .createCriteria(Book.class)
         .add(Restrictions.in("id", bookIds))
-        .list();
+        .setCacheable(true);
+    return PROJECTION.list(criteria, properties);
   }
 
   
   /**
-   * Return all books with the incoming Author IDs. Unknown IDs are ignored
+   * Return all books with the incoming Author IDs. Unknown IDs are ignored.
+   * The result is kept in the query cache, when read on the primary.
    *
    * @param authorIds List of Author IDs
    * @return List of Books. May be empty
@@ -72,10 +128,106 @@ public class BookDAO extends AbstractDAO<Book> {
     return currentSession()
         .createCriteria(Book.class)
         .add(Restrictions.in("authorId", authorIds))
+        .setCacheable(true)
         .list();
   }
 
 
+  /**
+   * Pass the id and title of every book to the consumer. Rows are scrolled
+   * rather than listed so the full catalog is never held in memory.
+   *
+   * @param consumer
+   *          Consumer of each book id and title
+   */
+  public void forEachTitle(BiConsumer<Integer, String> consumer) {
+    forEach("select b.id, b.title from Book b", consumer);
+  }
+
+  /**
+   * Pass the id and subject CSV of every book to the consumer. See forEachTitle.
+   *
+   * @param consumer
+   *          Consumer of each book id and subject CSV
+   */
+  public void forEachSubject(BiConsumer<Integer, String> consumer) {
+    forEach("select b.id, b.subject from Book b", consumer);
+  }
+
+  /**
+   * Pass the id and isbn CSV of every book to the consumer. See forEachTitle.
+   *
+   * @param consumer
+   *          Consumer of each book id and isbn CSV
+   */
+  public void forEachIsbn(BiConsumer<Integer, String> consumer) {
+    forEach("select b.id, b.isbn from Book b", consumer);
+  }
+
+  /**
+   * Pass every book, ordered by id, to the consumer. The books are read
+   * from the replica with their own stateless session, so this may be called
+   * outside of a UnitOfWork and the books are never held by a session.
+   *
+   * The books are read a page at a time, each query seeking past the last id
+   * of the previous page. No statement stays open while the consumer writes
+   * the books out, and no driver setting is needed to bound the rows held in
+   * memory.
+   *
+   * @param fetchSize
+   *          Number of books read per query
+   * @param consumer
+   *          Consumer of each book
+   */
+  @SuppressWarnings("unchecked")
+  public void forEachBook(int fetchSize, Consumer<Book> consumer) {
+    StatelessSession session = replicaSessionFactory().openStatelessSession();
+    try {
+      int lastId = 0;
+      while (true) {
+        List<Book> page = session
+            .createQuery("from Book b where b.id > :lastId order by b.id")
+            .setParameter("lastId", lastId)
+            .setReadOnly(true)
+            .setMaxResults(fetchSize)
+            .list();
+        page.forEach(consumer);
+        if (page.size() < fetchSize) {
+          break;
+        }
+        lastId = page.get(page.size() - 1).getId();
+      }
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Scroll through the rows of a query selecting a book id and one string
+   * column.
+   *
+   * @param query
+   *          HQL selecting the id and a string
+   * @param consumer
+   *          Consumer of each row
+   */
+  private void forEach(String query, BiConsumer<Integer, String> consumer) {
+    // The MySQL driver only streams rows with a fetch size of MIN_VALUE
+    ScrollableResults results = currentSession()
+        .createQuery(query)
+        .setReadOnly(true)
+        .setFetchSize(Integer.MIN_VALUE)
+        .scroll(ScrollMode.FORWARD_ONLY);
+    try {
+      while (results.next()) {
+        consumer.accept((Integer) results.get(0), (String) results.get(1));
+      }
+    } finally {
+      results.close();
+    }
+  }
+
+
   /**
    * Persists a new Book into the backing DB.
    *
@@ -86,6 +238,77 @@ public class BookDAO extends AbstractDAO<Book> {
     return persist(book);
   }
   
+  /**
+   * Persists new Books with JDBC batch inserts. The books are not attached to
+   * the session, so memory does not grow with the number of books created.
+   * The generated id is set on each book.
+   *
+   * @param books
+   *          Books to be created
+   */
+  public void createAll(List<Book> books) {
+    if (books.isEmpty()) {
+      return;
+    }
+
+    currentSession().doWork(connection -> {
+      String sql = "insert into book (author_id, year, title, isbn, subjects, ol_works, " +
+          "description, image_small, image_medium, image_large) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+      try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        for (Book book : books) {
+          statement.setInt(1, book.getAuthorId());
+          statement.setInt(2, book.getYear());
+          statement.setString(3, book.getTitle());
+          statement.setString(4, book.getIsbn());
+          statement.setString(5, book.getSubject());
+          statement.setString(6, book.getOlWorks());
+          statement.setString(7, book.getDescription());
+          statement.setString(8, book.getImageSmall());
+          statement.setString(9, book.getImageMedium());
+          statement.setString(10, book.getImageLarge());
+          statement.addBatch();
+        }
+        statement.executeBatch();
+
+        // Keys come back in the order the rows were added
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+          for (Book book : books) {
+            if (!keys.next()) {
+              throw new SQLException("Missing generated id for book '" + book.getTitle() + "'");
+            }
+            book.setId(keys.getInt(1));
+          }
+        }
+      }
+    });
+
+    // Hibernate did not see these inserts, so drop cached queries that may miss the books
+    sessionFactory.getCache().evictDefaultQueryRegion();
+  }
+
+  /**
+   * Get the author id of each of the incoming books. Unknown IDs are ignored.
+   *
+   * @param bookIds
+   *          IDs of books
+   * @return Map of author ids, indexed by book id
+   */
+  public Map<Integer, Integer> findAuthorIds(Collection<Integer> bookIds) {
+    Map<Integer, Integer> authorIds = new HashMap<Integer, Integer>();
+    if (bookIds.isEmpty()) {
+      return authorIds;
+    }
+
+    List<Object[]> rows = currentSession()
+        .createQuery("select b.id, b.authorId from Book b where b.id in (:ids)")
+        .setParameterList("ids", bookIds)
+        .list();
+    for (Object[] row : rows) {
+      authorIds.put((Integer) row[0], (Integer) row[1]);
+    }
+    return authorIds;
+  }
+
   /**
    * Updates book in DB.
    *
@@ -93,6 +316,8 @@ public class BookDAO extends AbstractDAO<Book> {
    */
   public void update(Book book) {
     currentSession().saveOrUpdate(book);
+    // Write now so a concurrent update, via the version, fails here
+    currentSession().flush();
   }
 
   /**
@@ -109,22 +334,130 @@ public class BookDAO extends AbstractDAO<Book> {
    * Find all books in the database. 
    *
    * @param segment
-   *          Offset and limit for query
+   *          Offset, cursor and limit for query
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Books
    * @return List of Books, may be empty
    */
-  public List<Book> findAll(Segment segment) {
-    Integer offset = segment.getOffset();
-    Integer limit = segment.getLimit();
-
-	  Criteria criteria = currentSession()
+  public List<Book> findAll(Segment segment, List<String> properties) {
+    Criteria criteria = currentSession()
      .createCriteria(Book.class)
-     .setFirstResult(offset)
-     .setMaxResults(limit);
-	    	
-	  return criteria.list();
+     .addOrder(Order.asc("id"));
+
+    List<Book> books = PROJECTION.list(segment.apply(criteria), properties);
+    if (!books.isEmpty()) {
+      segment.setNext(books.size(), books.get(books.size() - 1).getId());
+    }
+    return books;
   }
   
   
+  /**
+   * Find the books matching a set of filters. Each filter that is null is not
+   * applied. The matching, ordering and paging are all done by the database.
+   *
+   * @param bookIds
+   *          List of book IDs. May be null
+   * @param authorIds
+   *          List of author IDs. May be null
+   * @param matchAll
+   *          True if a book must match all of the filters, false if it must
+   *          match any of them
+   * @param segment
+   *          Offset, cursor and limit for query
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Books
+   * @return List of Books, may be empty
+   */
+  public List<Book> findByFilter(List<Integer> bookIds,
+                                 List<Integer> authorIds,
+                                 boolean matchAll,
+                                 Segment segment,
+                                 List<String> properties) {
+    Criteria criteria = currentSession()
+        .createCriteria(Book.class)
+        .add(filter(bookIds, authorIds, matchAll))
+        .addOrder(Order.asc("id"));
+
+    List<Book> books = PROJECTION.list(segment.apply(criteria), properties);
+    if (!books.isEmpty()) {
+      segment.setNext(books.size(), books.get(books.size() - 1).getId());
+    }
+    return books;
+  }
+
+  /**
+   * Get number of books matching a set of filters. See findByFilter.
+   *
+   * @param bookIds
+   *          List of book IDs. May be null
+   * @param authorIds
+   *          List of author IDs. May be null
+   * @param matchAll
+   *          True if a book must match all of the filters, false if it must
+   *          match any of them
+   * @return number of matching books
+   */
+  public long getNumberOfBooks(List<Integer> bookIds,
+                               List<Integer> authorIds,
+                               boolean matchAll) {
+    Criteria criteria = currentSession()
+        .createCriteria(Book.class)
+        .add(filter(bookIds, authorIds, matchAll))
+        .setProjection(Projections.rowCount());
+
+    Number numRows = (Number) criteria.uniqueResult();
+    return numRows.longValue();
+  }
+
+  /**
+   * Find the books of a segment of matching IDs, e.g. from the title index.
+   * Only the IDs of the segment are sent to the database.
+   *
+   * @param ids
+   *          Sorted list of all the matching book IDs
+   * @param segment
+   *          Offset, cursor and limit into the IDs
+   * @param properties
+   *          Properties to read, must include the 'id'. Null to read whole
+   *          Books
+   * @return List of Books, may be empty
+   */
+  public List<Book> findSegment(List<Integer> ids, Segment segment, List<String> properties) {
+    List<Integer> segmentIds = segment.apply(ids);
+    if (segmentIds.isEmpty()) {
+      return new ArrayList<Book>();
+    }
+
+    Criteria criteria = currentSession()
+        .createCriteria(Book.class)
+        .add(Restrictions.in("id", segmentIds))
+        .addOrder(Order.asc("id"));
+    return PROJECTION.list(criteria, properties);
+  }
+
+  /**
+   * Get the IDs of the books of some authors
+   *
+   * @param authorIds
+   *          IDs of authors
+   * @return sorted list of book IDs. May be empty
+   */
+  @SuppressWarnings("unchecked")
+  public List<Integer> findIdsByAuthorId(List<Integer> authorIds) {
+    if (authorIds.isEmpty()) {
+      return new ArrayList<Integer>();
+    }
+    return currentSession()
+        .createCriteria(Book.class)
+        .add(Restrictions.in("authorId", authorIds))
+        .addOrder(Order.asc("id"))
+        .setProjection(Projections.id())
+        .list();
+  }
+
   /**
    * Get total number of books
    * 
@@ -139,5 +472,47 @@ public class BookDAO extends AbstractDAO<Book> {
 	    return numRows.longValue();
 	}
 
+  /**
+   * Create the restriction for a set of filters. A filter that is null is not
+   * applied, a filter that is empty matches nothing.
+   *
+   * @param bookIds
+   *          List of book IDs. May be null
+   * @param authorIds
+   *          List of author IDs. May be null
+   * @param matchAll
+   *          True to 'and' the filters, false to 'or' them
+   * @return the restriction
+   */
+  private static Criterion filter(List<Integer> bookIds,
+                                  List<Integer> authorIds,
+                                  boolean matchAll) {
+    Junction junction = matchAll ? Restrictions.conjunction() : Restrictions.disjunction();
+
+    if (bookIds != null) {
+      junction.add(in("id", bookIds));
+    }
+    if (authorIds != null) {
+      junction.add(in("authorId", authorIds));
+    }
+
+    return junction;
+  }
+
+  /**
+   * 'in' restriction that handles an empty list, which is not valid SQL.
+   *
+   * @param property
+   *          Property to restrict
+   * @param values
+   *          Values of property
+   * @return the restriction
+   */
+  private static Criterion in(String property, List<Integer> values) {
+    if (values.isEmpty()) {
+      return Restrictions.sqlRestriction("1=0");
+    }
+    return Restrictions.in(property, values);
+  }
 
 }
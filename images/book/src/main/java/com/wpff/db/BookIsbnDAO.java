@@ -0,0 +1,137 @@
+package com.wpff.db;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import com.wpff.common.db.ReplicaAwareDAO;
+import com.wpff.core.BookIsbn;
+
+/**
+ * Data access object for the 'book_isbn' table
+ */
+public class BookIsbnDAO extends ReplicaAwareDAO<BookIsbn> {
+
+  public BookIsbnDAO(SessionFactory factory, SessionFactory replicaFactory) {
+    super(factory, replicaFactory);
+  }
+
+  /**
+   * Find the ISBN mappings for the incoming normalized ISBNs. Unknown ISBNs are
+   * ignored.
+   *
+   * @param isbns
+   *          Normalized ISBNs
+   * @return List of mappings, ordered by isbn then book id. May be empty
+   */
+  public List<BookIsbn> findByIsbn(Collection<String> isbns) {
+    if (isbns.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return currentSession()
+        .createCriteria(BookIsbn.class)
+        .add(Restrictions.in("isbn", isbns))
+        .addOrder(Order.asc("isbn"))
+        .addOrder(Order.asc("bookId"))
+        .list();
+  }
+
+  /**
+   * Replace the ISBNs of a book. Values that are not an ISBN are skipped.
+   *
+   * @param bookId
+   *          ID of book
+   * @param isbns
+   *          ISBN-10s and ISBN-13s of the book, in any form. May be null
+   */
+  public void replace(int bookId, Collection<String> isbns) {
+    delete(bookId);
+    for (String isbn : normalizeAll(isbns)) {
+      persist(new BookIsbn(isbn, bookId));
+    }
+    // Write now, as book creation is not in a transaction that would flush
+    currentSession().flush();
+  }
+
+  /**
+   * Persists the ISBNs of new books with JDBC batch inserts. See
+   * BookDAO.createAll.
+   *
+   * @param bookIsbns
+   *          ISBNs to add, already normalized
+   */
+  public void createAll(List<BookIsbn> bookIsbns) {
+    if (bookIsbns.isEmpty()) {
+      return;
+    }
+
+    currentSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(
+               "insert into book_isbn (isbn, book_id) values (?, ?)")) {
+        for (BookIsbn bookIsbn : bookIsbns) {
+          statement.setString(1, bookIsbn.getIsbn());
+          statement.setInt(2, bookIsbn.getBookId());
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+    });
+  }
+
+  /**
+   * Normalize a list of ISBNs. Values that are not an ISBN are skipped.
+   *
+   * @param isbns
+   *          ISBN-10s and ISBN-13s, in any form. May be null
+   * @return distinct normalized ISBNs, in incoming order
+   */
+  public static Set<String> normalizeAll(Collection<String> isbns) {
+    Set<String> normalized = new LinkedHashSet<String>();
+    if (isbns == null) {
+      return normalized;
+    }
+
+    for (String isbn : isbns) {
+      String value = BookIsbn.normalize(isbn);
+      if (value != null) {
+        normalized.add(value);
+      }
+    }
+    return normalized;
+  }
+
+  /**
+   * Delete all ISBNs of a book
+   *
+   * @param bookId
+   *          ID of book
+   */
+  public void delete(int bookId) {
+    currentSession()
+        .createQuery("delete from BookIsbn i where i.bookId = :bookId")
+        .setParameter("bookId", bookId)
+        .executeUpdate();
+  }
+
+  /**
+   * Get total number of ISBN mappings
+   *
+   * @return number of mappings
+   */
+  public long getNumberOfIsbns() {
+    Number numRows = (Number) currentSession()
+        .createCriteria(BookIsbn.class)
+        .setProjection(Projections.rowCount())
+        .uniqueResult();
+    return numRows.longValue();
+  }
+
+}
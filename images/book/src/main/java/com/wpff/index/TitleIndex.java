@@ -0,0 +1,277 @@
+package com.wpff.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.wpff.common.index.Postings;
+
+/**
+ * In memory inverted index of book titles, used instead of a SQL
+ * "LIKE '%title%'" scan of the book table.
+ *
+ * Each title is lower cased and broken into trigrams (3 character
+ * substrings). Each trigram maps to the sorted list of book IDs whose title
+ * contains it. A query is answered by intersecting the lists for the query's
+ * trigrams and then verifying each candidate against its full title, so the
+ * returned IDs are exact matches.
+ *
+ * Queries shorter than a trigram are answered by scanning the titles held in
+ * the index.
+ *
+ * The index is safe for concurrent readers and writers.
+ */
+public class TitleIndex {
+
+  /**
+   * Length of each gram
+   */
+  private static final int GRAM = 3;
+
+  /**
+   * Trigram to sorted list of book IDs
+   */
+  private final Map<String, Postings> postings = new HashMap<String, Postings>();
+
+  /**
+   * Book ID to normalized title
+   */
+  private final Map<Integer, String> titles = new HashMap<Integer, String>();
+
+  /**
+   * Guards postings and titles
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Add or replace the title for a book
+   *
+   * @param bookId
+   *          ID of book
+   * @param title
+   *          Title of book. A null title removes the book from the index.
+   */
+  public void put(int bookId, String title) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(bookId);
+      if (title == null) {
+        return;
+      }
+
+      String normalized = normalize(title);
+      titles.put(bookId, normalized);
+      for (String gram : grams(normalized)) {
+        Postings list = postings.get(gram);
+        if (list == null) {
+          list = new Postings();
+          postings.put(gram, list);
+        }
+        list.add(bookId);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a book from the index
+   *
+   * @param bookId
+   *          ID of book
+   */
+  public void remove(int bookId) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(bookId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find books whose title contains the query, ignoring case.
+   *
+   * @param query
+   *          Title or partial title
+   * @return Sorted list of matching book IDs. May be empty
+   */
+  public List<Integer> findContaining(String query) {
+    return find(normalize(query), false);
+  }
+
+  /**
+   * Find books whose title starts with the query, ignoring case.
+   *
+   * @param query
+   *          Start of title
+   * @return Sorted list of matching book IDs. May be empty
+   */
+  public List<Integer> findStartingWith(String query) {
+    return find(normalize(query), true);
+  }
+
+  /**
+   * Find books whose title is equal to the query, ignoring case.
+   *
+   * @param query
+   *          Title
+   * @return Sorted list of matching book IDs. May be empty
+   */
+  public List<Integer> findEqualTo(String query) {
+    String normalized = normalize(query);
+    List<Integer> matches = find(normalized, true);
+
+    lock.readLock().lock();
+    try {
+      matches.removeIf(id -> !normalized.equals(titles.get(id)));
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the title of a book as held in the index: trimmed and lower case.
+   *
+   * @param bookId
+   *          ID of book
+   * @return normalized title, null if the book is not in the index
+   */
+  public String getTitle(int bookId) {
+    lock.readLock().lock();
+    try {
+      return titles.get(bookId);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of books in the index
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return titles.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /************************************************************************/
+  /** Helper methods **/
+  /************************************************************************/
+
+  /**
+   * Find matching books
+   *
+   * @param query
+   *          Normalized query
+   * @param prefix
+   *          True to only match titles starting with the query
+   * @return Sorted list of matching book IDs
+   */
+  private List<Integer> find(String query, boolean prefix) {
+    List<Integer> matches = new ArrayList<Integer>();
+
+    lock.readLock().lock();
+    try {
+      if (query.length() < GRAM) {
+        // Too short for the trigrams, check every title
+        for (Map.Entry<Integer, String> entry : titles.entrySet()) {
+          if (matches(entry.getValue(), query, prefix)) {
+            matches.add(entry.getKey());
+          }
+        }
+        matches.sort(null);
+        return matches;
+      }
+
+      // Get the postings for each trigram in the query, smallest first.
+      // If any trigram is unknown, nothing can match.
+      List<Postings> lists = new ArrayList<Postings>();
+      for (String gram : grams(query)) {
+        Postings list = postings.get(gram);
+        if (list == null) {
+          return matches;
+        }
+        lists.add(list);
+      }
+      lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+      // Intersect, starting from the smallest list, then verify the candidate
+      // against the full title to drop false positives.
+      Postings smallest = lists.get(0);
+      for (int i = 0; i < smallest.size; i++) {
+        int candidate = smallest.ids[i];
+
+        boolean inAll = true;
+        for (int j = 1; j < lists.size() && inAll; j++) {
+          inAll = lists.get(j).contains(candidate);
+        }
+
+        if (inAll && matches(titles.get(candidate), query, prefix)) {
+          matches.add(candidate);
+        }
+      }
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a book. Caller must hold the write lock.
+   *
+   * @param bookId
+   *          ID of book
+   */
+  private void removeInternal(int bookId) {
+    String existing = titles.remove(bookId);
+    if (existing == null) {
+      return;
+    }
+
+    for (String gram : grams(existing)) {
+      Postings list = postings.get(gram);
+      if (list != null) {
+        list.remove(bookId);
+        if (list.size == 0) {
+          postings.remove(gram);
+        }
+      }
+    }
+  }
+
+  /**
+   * Check a title against a query
+   */
+  private static boolean matches(String title, String query, boolean prefix) {
+    return prefix ? title.startsWith(query) : title.contains(query);
+  }
+
+  /**
+   * Normalize a title or query
+   */
+  private static String normalize(String value) {
+    return (value == null) ? "" : value.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Get the distinct trigrams of a normalized string
+   */
+  private static Set<String> grams(String value) {
+    Set<String> grams = new LinkedHashSet<String>();
+    for (int i = 0; i + GRAM <= value.length(); i++) {
+      grams.add(value.substring(i, i + GRAM));
+    }
+    return grams;
+  }
+}
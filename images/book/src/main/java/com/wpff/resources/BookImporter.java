@@ -0,0 +1,235 @@
+package com.wpff.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.wpff.common.index.FuzzyIndex;
+import com.wpff.common.index.SubjectIndex;
+import com.wpff.core.Book;
+import com.wpff.core.BookIsbn;
+import com.wpff.db.BookDAO;
+import com.wpff.db.BookIsbnDAO;
+import com.wpff.index.TitleIndex;
+import com.wpff.query.BookQuery;
+import com.wpff.result.ImportResult;
+
+/**
+ * Imports a stream of books in bulk for BookResource.
+ *
+ * The books are parsed one at a time from newline delimited JSON and written
+ * in chunks with JDBC batch inserts, so memory does not grow with the size of
+ * the stream. A book is a duplicate when a book with the same title (ignoring
+ * case) and author id already exists, which is checked against the title index
+ * and one query per chunk.
+ */
+class BookImporter {
+
+  /**
+   * Reads BookQuery beans. Unknown fields, like the 'id' and 'authorName' of an
+   * exported BookResult, are ignored.
+   */
+  private static final ObjectReader READER = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+      .readerFor(BookQuery.class);
+
+  private final BookDAO bookDAO;
+
+  private final BookIsbnDAO isbnDAO;
+
+  private final TitleIndex titleIndex;
+
+  private final SubjectIndex subjectIndex;
+
+  private final FuzzyIndex fuzzyTitleIndex;
+
+  /**
+   * Number of books written per batch
+   */
+  private final int chunkSize;
+
+  /**
+   * Told the ids of the books of each chunk, once they are written
+   */
+  private final Consumer<List<Integer>> createdListener;
+
+  BookImporter(BookDAO bookDAO,
+               BookIsbnDAO isbnDAO,
+               TitleIndex titleIndex,
+               SubjectIndex subjectIndex,
+               FuzzyIndex fuzzyTitleIndex,
+               int chunkSize,
+               Consumer<List<Integer>> createdListener) {
+    this.bookDAO = bookDAO;
+    this.isbnDAO = isbnDAO;
+    this.titleIndex = titleIndex;
+    this.subjectIndex = subjectIndex;
+    this.fuzzyTitleIndex = fuzzyTitleIndex;
+    this.chunkSize = chunkSize;
+    this.createdListener = createdListener;
+  }
+
+  /**
+   * Import books from a stream of newline delimited JSON, one BookQuery per
+   * line. If the stream has malformed JSON the books before it are still
+   * imported and the error is set in the returned summary.
+   *
+   * @param input
+   *          Stream of books
+   * @return summary of the import
+   * @throws IOException
+   *           if the stream can't be read
+   */
+  ImportResult importBooks(InputStream input) throws IOException {
+    ImportResult result = new ImportResult();
+    List<BookQuery> chunk = new ArrayList<BookQuery>(chunkSize);
+
+    try (MappingIterator<BookQuery> books = READER.readValues(input)) {
+      while (books.hasNextValue()) {
+        chunk.add(books.nextValue());
+        result.setRead(result.getRead() + 1);
+
+        if (chunk.size() >= chunkSize) {
+          importChunk(chunk, result);
+          chunk.clear();
+        }
+      }
+    }
+    catch (JsonProcessingException e) {
+      result.setError("Invalid book after " + result.getRead() + " books: " + e.getOriginalMessage());
+    }
+
+    importChunk(chunk, result);
+    return result;
+  }
+
+  /************************************************************************/
+  /** Helper methods **/
+  /************************************************************************/
+
+  /**
+   * Write one chunk of books, skipping invalid books and duplicates
+   *
+   * @param chunk
+   *          Books to import
+   * @param result
+   *          Summary to update
+   */
+  private void importChunk(List<BookQuery> chunk, ImportResult result) {
+    // Books with a title & author id, and the existing books with the same title
+    List<BookQuery> valid = new ArrayList<BookQuery>(chunk.size());
+    Set<Integer> candidateIds = new HashSet<Integer>();
+    for (BookQuery bookBean : chunk) {
+      if ( (bookBean.getTitle() == null) || bookBean.getTitle().trim().isEmpty() || (bookBean.getAuthorId() == null) ) {
+        result.setInvalid(result.getInvalid() + 1);
+        continue;
+      }
+      valid.add(bookBean);
+      candidateIds.addAll(titleIndex.findEqualTo(bookBean.getTitle()));
+    }
+
+    // Keys of the existing books, and of the books in this chunk as they are added
+    Set<String> existing = new HashSet<String>();
+    Map<Integer, Integer> authorIds = bookDAO.findAuthorIds(candidateIds);
+    for (Map.Entry<Integer, Integer> entry : authorIds.entrySet()) {
+      String title = titleIndex.getTitle(entry.getKey());
+      if (title != null) {
+        existing.add(key(entry.getValue(), title));
+      }
+    }
+
+    // New books and their incoming isbns, at the same index
+    List<Book> books = new ArrayList<Book>(valid.size());
+    List<List<String>> isbns = new ArrayList<List<String>>(valid.size());
+    for (BookQuery bookBean : valid) {
+      if (!existing.add(key(bookBean.getAuthorId(), bookBean.getTitle()))) {
+        result.setDuplicates(result.getDuplicates() + 1);
+        continue;
+      }
+
+      Book book = convertToBook(bookBean);
+      books.add(book);
+      isbns.add(bookBean.getIsbns());
+    }
+
+    bookDAO.createAll(books);
+
+    // Indexed once the books are committed. The import runs without a
+    // transaction, so that is at once and the next chunk finds them
+    bookDAO.afterCommit(() -> {
+      for (Book book : books) {
+        titleIndex.put(book.getId(), book.getTitle());
+        fuzzyTitleIndex.put(book.getId(), book.getTitle());
+        subjectIndex.put(book.getId(), book.getSubject());
+      }
+    });
+
+    List<BookIsbn> bookIsbns = new ArrayList<BookIsbn>();
+    for (int i = 0; i < books.size(); i++) {
+      Book book = books.get(i);
+      for (String isbn : BookIsbnDAO.normalizeAll(isbns.get(i))) {
+        bookIsbns.add(new BookIsbn(isbn, book.getId()));
+      }
+    }
+    isbnDAO.createAll(bookIsbns);
+
+    if (!books.isEmpty()) {
+      List<Integer> createdIds = new ArrayList<Integer>(books.size());
+      for (Book book : books) {
+        createdIds.add(book.getId());
+      }
+      createdListener.accept(createdIds);
+    }
+
+    result.setCreated(result.getCreated() + books.size());
+  }
+
+  /**
+   * Convert an incoming book into a Book for the database. The fields are set
+   * directly rather than via BeanUtils, as this runs for every imported book.
+   *
+   * @param bookBean
+   *          Incoming book
+   * @return new Book
+   */
+  private static Book convertToBook(BookQuery bookBean) {
+    Book book = new Book();
+    book.setAuthorId(bookBean.getAuthorId());
+    book.setTitle(bookBean.getTitle());
+    book.setDescription(bookBean.getDescription());
+    book.setImageSmall(bookBean.getImageSmall());
+    book.setImageMedium(bookBean.getImageMedium());
+    book.setImageLarge(bookBean.getImageLarge());
+    book.setOlWorks(bookBean.getOpenlibraryWorkUrl());
+    book.setSubject(BookResource.convertListToCsv(bookBean.getSubjects()));
+    book.setIsbn(BookResource.convertListToCsv(bookBean.getIsbns()));
+    if (bookBean.getFirstPublishedYear() != null) {
+      book.setYear(bookBean.getFirstPublishedYear());
+    }
+    return book;
+  }
+
+  /**
+   * Key of a book for finding duplicates
+   *
+   * @param authorId
+   *          ID of author
+   * @param title
+   *          Title of book
+   * @return key
+   */
+  private static String key(int authorId, String title) {
+    return authorId + ":" + title.trim().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,191 @@
+package com.wpff.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wpff.common.index.SubjectIndex;
+import com.wpff.common.result.FieldSet;
+import com.wpff.core.Book;
+import com.wpff.result.BookResult;
+
+/**
+ * Maps a Book from the DB into a BookResult for return to caller.
+ */
+public final class BookMapper {
+
+  /**
+   * Fields of a BookResult that may be requested
+   */
+  static final List<String> FIELDS = Arrays.asList(
+      "id", "authorId", "authorName", "title", "description", "firstPublishedYear",
+      "openlibraryWorkUrl", "imageSmall", "imageMedium", "imageLarge", "subjects", "isbns");
+
+  /**
+   * Fields of the 'summary' view, e.g. for a catalog listing
+   */
+  static final List<String> SUMMARY = Arrays.asList(
+      "id", "title", "authorId", "authorName", "firstPublishedYear", "imageSmall");
+
+  /**
+   * Book property read from the database for each field
+   */
+  private static final Map<String, String> PROPERTIES = new HashMap<String, String>();
+  static {
+    PROPERTIES.put("id", "id");
+    PROPERTIES.put("authorId", "authorId");
+    PROPERTIES.put("authorName", "authorId");
+    PROPERTIES.put("title", "title");
+    PROPERTIES.put("description", "description");
+    PROPERTIES.put("firstPublishedYear", "year");
+    PROPERTIES.put("openlibraryWorkUrl", "olWorks");
+    PROPERTIES.put("imageSmall", "imageSmall");
+    PROPERTIES.put("imageMedium", "imageMedium");
+    PROPERTIES.put("imageLarge", "imageLarge");
+    PROPERTIES.put("subjects", "subject");
+    PROPERTIES.put("isbns", "isbn");
+  }
+
+  private BookMapper() {
+  }
+
+  /**
+   * Parse the 'fields' and 'view' query params. The id is always returned.
+   *
+   * @param fields
+   *          csv of fields. May be null
+   * @param view
+   *          'summary' or 'full'. May be null
+   * @return the requested fields
+   */
+  static FieldSet parseFields(String fields, String view) {
+    return FieldSet.parse(fields, view, FIELDS, SUMMARY, "id");
+  }
+
+  /**
+   * Get the Book properties to read for the requested fields
+   *
+   * @param fields
+   *          Requested fields
+   * @return list of distinct properties, or null to read the whole Book
+   */
+  static List<String> properties(FieldSet fields) {
+    if (fields.isAll()) {
+      return null;
+    }
+
+    List<String> properties = new ArrayList<String>();
+    for (String field : fields.getFields()) {
+      String property = PROPERTIES.get(field);
+      if (!properties.contains(property)) {
+        properties.add(property);
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Convert a Book from the DB into a BookResult
+   *
+   * @param dbBook
+   *          Book in DB
+   * @param authorName
+   *          Name of the book's author
+   * @return Book bean
+   */
+  public static BookResult toResult(Book dbBook, String authorName) {
+    BookResult result = new BookResult();
+
+    result.setId(dbBook.getId());
+    result.setAuthorId(dbBook.getAuthorId());
+    result.setAuthorName(authorName);
+    result.setTitle(dbBook.getTitle());
+    result.setDescription(dbBook.getDescription());
+    result.setFirstPublishedYear(dbBook.getYear());
+    result.setOpenlibraryWorkUrl(dbBook.getOlWorks());
+    result.setImageSmall(dbBook.getImageSmall());
+    result.setImageMedium(dbBook.getImageMedium());
+    result.setImageLarge(dbBook.getImageLarge());
+
+    // dbBook's 'subjects' and 'isbn' are csvs, convert into lists
+    if (dbBook.getSubject() != null) {
+      result.setSubjects(SubjectIndex.split(dbBook.getSubject()));
+    }
+    result.setIsbns(convertCsvToList(dbBook.getIsbn()));
+
+    return result;
+  }
+
+  /**
+   * Convert a Book from the DB into a BookResult with only the requested
+   * fields. The Book may only have the properties for those fields.
+   *
+   * @param dbBook
+   *          Book in DB
+   * @param authorName
+   *          Name of the book's author. Only used if 'authorName' is requested
+   * @param fields
+   *          Requested fields
+   * @return Book bean
+   */
+  public static BookResult toResult(Book dbBook, String authorName, FieldSet fields) {
+    if (fields.isAll()) {
+      return toResult(dbBook, authorName);
+    }
+
+    BookResult result = new BookResult();
+
+    result.setId(dbBook.getId());
+    if (fields.contains("authorId")) {
+      result.setAuthorId(dbBook.getAuthorId());
+    }
+    if (fields.contains("authorName")) {
+      result.setAuthorName(authorName);
+    }
+    if (fields.contains("title")) {
+      result.setTitle(dbBook.getTitle());
+    }
+    if (fields.contains("description")) {
+      result.setDescription(dbBook.getDescription());
+    }
+    if (fields.contains("firstPublishedYear")) {
+      result.setFirstPublishedYear(dbBook.getYear());
+    }
+    if (fields.contains("openlibraryWorkUrl")) {
+      result.setOpenlibraryWorkUrl(dbBook.getOlWorks());
+    }
+    if (fields.contains("imageSmall")) {
+      result.setImageSmall(dbBook.getImageSmall());
+    }
+    if (fields.contains("imageMedium")) {
+      result.setImageMedium(dbBook.getImageMedium());
+    }
+    if (fields.contains("imageLarge")) {
+      result.setImageLarge(dbBook.getImageLarge());
+    }
+    if (fields.contains("subjects") && (dbBook.getSubject() != null)) {
+      result.setSubjects(SubjectIndex.split(dbBook.getSubject()));
+    }
+    if (fields.contains("isbns")) {
+      result.setIsbns(convertCsvToList(dbBook.getIsbn()));
+    }
+
+    return result;
+  }
+
+  /**
+   * Helper to convert a csv into a list of its values
+   *
+   * @param csv
+   * @return list of values, empty if the csv is null
+   */
+  static List<String> convertCsvToList(String csv) {
+    if (csv == null) {
+      return Collections.emptyList();
+    }
+    return Arrays.asList(csv.split("\\s*,\\s*"));
+  }
+}
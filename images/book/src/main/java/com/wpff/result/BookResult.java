@@ -1,4 +1,5 @@
 package com.wpff.result;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.wpff.query.BookQuery;
 
 /**
@@ -6,7 +7,9 @@ import com.wpff.query.BookQuery;
  * This is used instead of the core.Book class so we can control the structure
  * of the format more closely.
  *
+ * Fields that are null, e.g. not requested via 'fields', are left out.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class BookResult extends BookQuery {
 
   private int id;
@@ -0,0 +1,122 @@
+package com.wpff.result;
+
+/**
+ * Summary of a bulk import of books that is returned to the caller.
+ */
+public class ImportResult {
+
+  /**
+   * Number of books read from the request
+   */
+  private long read;
+
+  /**
+   * Number of books created
+   */
+  private long created;
+
+  /**
+   * Number of books skipped as they already exist
+   */
+  private long duplicates;
+
+  /**
+   * Number of books skipped as they have no title or author id
+   */
+  private long invalid;
+
+  /**
+   * Error that stopped the import, null if none
+   */
+  private String error;
+
+  /**
+   * @return the read
+   */
+  public long getRead() {
+    return read;
+  }
+
+  /**
+   * @param read the read to set
+   */
+  public void setRead(long read) {
+    this.read = read;
+  }
+
+  /**
+   * @return the created
+   */
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * @param created the created to set
+   */
+  public void setCreated(long created) {
+    this.created = created;
+  }
+
+  /**
+   * @return the duplicates
+   */
+  public long getDuplicates() {
+    return duplicates;
+  }
+
+  /**
+   * @param duplicates the duplicates to set
+   */
+  public void setDuplicates(long duplicates) {
+    this.duplicates = duplicates;
+  }
+
+  /**
+   * @return the invalid
+   */
+  public long getInvalid() {
+    return invalid;
+  }
+
+  /**
+   * @param invalid the invalid to set
+   */
+  public void setInvalid(long invalid) {
+    this.invalid = invalid;
+  }
+
+  /**
+   * @return the error
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * @param error the error to set
+   */
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("ImportResult [read=");
+    builder.append(read);
+    builder.append(", created=");
+    builder.append(created);
+    builder.append(", duplicates=");
+    builder.append(duplicates);
+    builder.append(", invalid=");
+    builder.append(invalid);
+    builder.append(", error=");
+    builder.append(error);
+    builder.append("]");
+    return builder.toString();
+  }
+}
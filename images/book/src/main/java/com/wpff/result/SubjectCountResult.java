@@ -0,0 +1,48 @@
+package com.wpff.result;
+
+/**
+ * Bean representing a subject and its number of books, returned by the
+ * subject facets.
+ */
+public class SubjectCountResult {
+
+  private String subject;
+
+  private int count;
+
+  public SubjectCountResult() {
+  }
+
+  public SubjectCountResult(String subject, int count) {
+    this.subject = subject;
+    this.count = count;
+  }
+
+  /**
+   * @return the subject
+   */
+  public String getSubject() {
+    return subject;
+  }
+
+  /**
+   * @param subject the subject to set
+   */
+  public void setSubject(String subject) {
+    this.subject = subject;
+  }
+
+  /**
+   * @return the count
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @param count the count to set
+   */
+  public void setCount(int count) {
+    this.count = count;
+  }
+}
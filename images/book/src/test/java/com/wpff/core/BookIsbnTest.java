@@ -0,0 +1,41 @@
+package com.wpff.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BookIsbnTest {
+
+  @Test
+  public void keepsIsbn13() {
+    assertEquals("9780306406157", BookIsbn.normalize("9780306406157"));
+  }
+
+  @Test
+  public void removesHyphensAndSpaces() {
+    assertEquals("9780306406157", BookIsbn.normalize("978-0-306-40615-7"));
+    assertEquals("9780306406157", BookIsbn.normalize(" 978 0 306 40615 7 "));
+  }
+
+  @Test
+  public void convertsIsbn10() {
+    assertEquals("9780306406157", BookIsbn.normalize("0-306-40615-2"));
+  }
+
+  @Test
+  public void convertsIsbn10WithCheckDigitX() {
+    assertEquals("9780804429573", BookIsbn.normalize("080442957X"));
+    assertEquals("9780804429573", BookIsbn.normalize("080442957x"));
+  }
+
+  @Test
+  public void rejectsValuesThatAreNotIsbns() {
+    assertNull(BookIsbn.normalize(null));
+    assertNull(BookIsbn.normalize(""));
+    assertNull(BookIsbn.normalize("12345"));
+    assertNull(BookIsbn.normalize("97803064061X7"));
+    assertNull(BookIsbn.normalize("X306406152"));
+    assertNull(BookIsbn.normalize("not an isbn"));
+  }
+}
@@ -2,12 +2,10 @@ package wpff;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import org.apache.commons.beanutils.BeanUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -191,14 +189,10 @@ public class BookQueryController<T> {
 	 */
 	private QueryAuthorResult convertToResult(OpenLibraryAuthor author) {
 		QueryAuthorResult newResult = new QueryAuthorResult();
-		
-		try {
-      BeanUtils.copyProperties(newResult, author);
-      BeanUtils.copyProperty(newResult, "birthDate", author.getBirth_date());
-    } catch (IllegalAccessException | InvocationTargetException e) {
-      // Unable to copy properties
-      e.printStackTrace();
-    }
+
+		// Copied explicitly rather than via BeanUtils' reflection
+		newResult.setName(author.getName());
+		newResult.setBirthDate(author.getBirth_date());
 
 		// openlibrary key
 		newResult.setOlKey(author.getKey());
@@ -224,9 +218,6 @@ public class BookQueryController<T> {
 	private QueryTitleResult convertToResult(OpenLibraryTitle openLibraryTitle)  {
 		QueryTitleResult newResult = new QueryTitleResult();
 
-		System.out.println("converting: " + openLibraryTitle);
-		
-		
 		newResult.setTitle(openLibraryTitle.getTitle_suggest());
 		
 		// Set images for book
@@ -251,8 +242,6 @@ public class BookQueryController<T> {
 		newResult.setIsbns(openLibraryTitle.getIsbn());
 		newResult.setOpenLibraryKeys(openLibraryTitle.getEdition_key());
 
-		System.out.println("converted to: " + newResult);
-		
 		return newResult;
 	}
 
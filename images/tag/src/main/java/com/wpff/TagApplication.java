@@ -1,10 +1,14 @@
 package com.wpff;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.ws.rs.container.DynamicFeature;
 
 // Jedis
 import com.bendb.dropwizard.redis.JedisBundle;
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.wpff.common.count.CountCache;
+import com.wpff.common.db.ReplicaHibernateBundle;
 import com.wpff.common.drop.filter.TokenRequiredFeature;
 import com.wpff.core.Tag;
 import com.wpff.db.TagDAO;
@@ -44,6 +48,15 @@ public class TagApplication extends Application<TagConfiguration> {
       return configuration.getDataSourceFactory();
     }
   };
+
+  // Hibernate bundle for read only requests, on the read replica
+  private final HibernateBundle<TagConfiguration> replicaBundle = new ReplicaHibernateBundle<TagConfiguration>(
+      hibernateBundle, Tag.class) {
+    @Override
+    public DataSourceFactory getDataSourceFactory(TagConfiguration configuration) {
+      return configuration.getReadDataSourceFactory();
+    }
+  };
   
 // TODO metrics
   //public final static MetricRegistry metricRegistry = new MetricRegistry();
@@ -56,6 +69,7 @@ public class TagApplication extends Application<TagConfiguration> {
   public void initialize(final Bootstrap<TagConfiguration> bootstrap) {
     // Hibernate
     bootstrap.addBundle(hibernateBundle);
+    bootstrap.addBundle(replicaBundle);
 
     // Swagger
     bootstrap.addBundle(new SwaggerBundle<TagConfiguration>() {
@@ -96,10 +110,17 @@ public class TagApplication extends Application<TagConfiguration> {
     JedisPool jedisPool = configuration.getJedisFactory().build(environment);
 
     // Tag DAO
-    final TagDAO tagDao = new TagDAO(hibernateBundle.getSessionFactory());
+    final TagDAO tagDao = new TagDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+
+    // Cached total counts of the list pages
+    final CountCache countCache = new CountCache(
+        configuration.getCountRefreshInterval().toMilliseconds(),
+        TimeUnit.MILLISECONDS,
+        configuration.getCountCacheMaximumSize());
+    countCache.registerMetrics(environment.metrics());
 
     // Register endpoints
-    environment.jersey().register(new TagResource(tagDao));
+    environment.jersey().register(new TagResource(tagDao, jedisPool, countCache));
 
     // Add a container request filter for securing webservice endpoints.
     DynamicFeature tokenRequired = new TokenRequiredFeature(jedisPool);
@@ -6,6 +6,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 /**
  * Named query to select all tags
@@ -37,6 +38,13 @@ public class Tag {
 	@Column(name = "data", nullable = true)
 	private String data;
 
+	/**
+	 * Incremented by hibernate on each update, used for the ETag
+	 */
+	@Version
+	@Column(name = "version", nullable = false)
+	private long version;
+
 	/**
 	 * Default constructor
 	 */
@@ -78,6 +86,14 @@ public class Tag {
 		this.data = data;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
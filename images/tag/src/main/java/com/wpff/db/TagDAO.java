@@ -6,22 +6,22 @@ import java.util.Optional;
 import org.hibernate.Criteria;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import com.wpff.common.db.ReplicaAwareDAO;
 import com.wpff.common.result.Segment;
 import com.wpff.core.Tag;
 
-import io.dropwizard.hibernate.AbstractDAO;
-
 
 /**
  * Data access object for a Tag
  */
-public class TagDAO extends AbstractDAO<Tag> {
+public class TagDAO extends ReplicaAwareDAO<Tag> {
 
-  public TagDAO(SessionFactory factory) {
-    super(factory);
+  public TagDAO(SessionFactory factory, SessionFactory replicaFactory) {
+    super(factory, replicaFactory);
   }
 
   /**
@@ -60,12 +60,14 @@ public class TagDAO extends AbstractDAO<Tag> {
   }
 
   /**
-   * Update an existing tag
+   * Update an existing tag. The session is flushed so a concurrent update,
+   * caught by the tag's version, fails here.
    *
    * @param tag to update
    */
   public void update(Tag tag) {
     currentSession().saveOrUpdate(tag);
+    currentSession().flush();
   }
 
   /**
@@ -96,21 +98,19 @@ public class TagDAO extends AbstractDAO<Tag> {
    * Find all tags in the database. 
    * 
    * @param segment
-   *          Offset and limit for query
+   *          Offset, cursor and limit for query
    * @return List of Tags, may be empty
    */
   public List<Tag> findAll(Segment segment) {
-      Integer offset = segment.getOffset();
-    Integer limit = segment.getLimit();
-
-	  Criteria criteria = currentSession()
+    Criteria criteria = currentSession()
      .createCriteria(Tag.class)
-     .setFirstResult(offset)
-     .setMaxResults(limit);
-	    	
-	  return criteria.list();
-  }
+     .addOrder(Order.asc("id"));
 
+    List<Tag> tags = segment.apply(criteria).list();
+    if (!tags.isEmpty()) {
+      segment.setNext(tags.size(), tags.get(tags.size() - 1).getId());
+    }
+    return tags;
+  }
 
-  
 }
@@ -1,10 +1,13 @@
 package com.wpff;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.ws.rs.container.DynamicFeature;
 
 // Jedis
 import com.bendb.dropwizard.redis.JedisBundle;
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.wpff.common.count.CountCache;
 import com.wpff.common.drop.filter.TokenRequiredFeature;
 import com.wpff.core.User;
 import com.wpff.db.UserDAO;
@@ -84,8 +87,15 @@ public class UserApplication extends Application<UserConfiguration> {
     // User DAO 
     final UserDAO userDao = new UserDAO(hibernateBundle.getSessionFactory());
 
+    // Cached total counts of the list pages
+    final CountCache countCache = new CountCache(
+        configuration.getCountRefreshInterval().toMilliseconds(),
+        TimeUnit.MILLISECONDS,
+        configuration.getCountCacheMaximumSize());
+    countCache.registerMetrics(environment.metrics());
+
     // Register endpoints
-    environment.jersey().register(new UserResource(userDao));
+    environment.jersey().register(new UserResource(userDao, countCache));
 
     // Add a container request filter for securing webservice endpoints.
     DynamicFeature tokenRequired =new TokenRequiredFeature(jedisPool) ;
@@ -2,6 +2,7 @@ package com.wpff;
 
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.*;
@@ -42,6 +43,25 @@ public class UserConfiguration extends Configuration {
     this.redis = jedisFactory;
   }
 
+  /////////////////////////
+  // TOTAL COUNTS
+  // Cached totals of the list pages, recomputed after the refresh interval
+  @NotNull
+  @JsonProperty
+  private Duration countRefreshInterval = Duration.minutes(5);
+
+  @Min(1)
+  @JsonProperty
+  private int countCacheMaximumSize = 1000;
+
+  public Duration getCountRefreshInterval() {
+    return countRefreshInterval;
+  }
+
+  public int getCountCacheMaximumSize() {
+    return countCacheMaximumSize;
+  }
+
   /////////////////////////
   // DATABASE
   @Valid
@@ -6,6 +6,7 @@ import java.util.Optional;
 import org.hibernate.Criteria;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
@@ -80,19 +81,19 @@ public class UserDAO extends AbstractDAO<User> {
    * Find all users in the database. 
    *
    * @param segment
-   *          Offset and limit for query
+   *          Offset, cursor and limit for query
    * @return List of Users, may be empty
    */
   public List<User> findAll(Segment segment) {
-    Integer offset = segment.getOffset();
-    Integer limit = segment.getLimit();
-
-	  Criteria criteria = currentSession()
+    Criteria criteria = currentSession()
      .createCriteria(User.class)
-     .setFirstResult(offset)
-     .setMaxResults(limit);
-	    	
-	  return criteria.list();
+     .addOrder(Order.asc("id"));
+
+    List<User> users = segment.apply(criteria).list();
+    if (!users.isEmpty()) {
+      segment.setNext(users.size(), users.get(users.size() - 1).getId());
+    }
+    return users;
   }
   
   
@@ -110,5 +111,4 @@ public class UserDAO extends AbstractDAO<User> {
 	    return numRows.longValue();
 	}
 
-  
 }
@@ -1,6 +1,7 @@
 package com.wpff;
 
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.persistence.PersistenceException;
@@ -16,11 +17,18 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 // Jedis
 import com.bendb.dropwizard.redis.JedisBundle;
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.wpff.cache.BookTitleCache;
+import com.wpff.cache.ReadingStatsCache;
+import com.wpff.cache.TagDictionary;
+import com.wpff.common.cache.CacheInvalidator;
+import com.wpff.common.count.CountCache;
+import com.wpff.common.db.ReplicaHibernateBundle;
 import com.wpff.common.drop.filter.TokenRequiredFeature;
 import com.wpff.core.DatabaseUserBook;
 import com.wpff.core.Tag;
 import com.wpff.core.TagMapping;
 import com.wpff.core.User;
+import com.wpff.db.BookTitleDAO;
 import com.wpff.db.TagDAO;
 import com.wpff.db.TagMappingDAO;
 import com.wpff.db.UserBookDAO;
@@ -65,6 +73,15 @@ public class UserBookApplication extends Application<UserBookConfiguration> {
 				}
 			};
 
+	// Hibernate bundle for read only requests, on the read replica
+	private final HibernateBundle<UserBookConfiguration> replicaBundle =
+			new ReplicaHibernateBundle<UserBookConfiguration>(hibernateBundle, DatabaseUserBook.class, Tag.class, User.class, TagMapping.class) {
+				@Override
+				public DataSourceFactory getDataSourceFactory(UserBookConfiguration configuration) {
+					return configuration.getReadDataSourceFactory();
+				}
+			};
+
 	/**
 	 * Initialize the application
 	 *
@@ -73,6 +90,7 @@ public class UserBookApplication extends Application<UserBookConfiguration> {
 	public void initialize(final Bootstrap<UserBookConfiguration> bootstrap) {
 		// Hibernate
 		bootstrap.addBundle(hibernateBundle);
+		bootstrap.addBundle(replicaBundle);
 
 		// Swagger
 		bootstrap.addBundle(new SwaggerBundle<UserBookConfiguration>() {
@@ -99,19 +117,42 @@ public class UserBookApplication extends Application<UserBookConfiguration> {
 		java.util.logging.Logger.getLogger("org.hibernate").setLevel(Level.SEVERE);
 
 		// UserBook DAO
-		final UserBookDAO userBookDao = new UserBookDAO(hibernateBundle.getSessionFactory());
-		final UserDAO userDao = new UserDAO(hibernateBundle.getSessionFactory());
-		final TagDAO tagDao = new TagDAO(hibernateBundle.getSessionFactory());
-		final TagMappingDAO tagMapDao = new TagMappingDAO(hibernateBundle.getSessionFactory());
+		final UserBookDAO userBookDao = new UserBookDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+		final UserDAO userDao = new UserDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+		final TagDAO tagDao = new TagDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+		final TagMappingDAO tagMapDao = new TagMappingDAO(hibernateBundle.getSessionFactory(), replicaBundle.getSessionFactory());
+
+		// Book id to title replica, loaded here and then kept up to date from the
+		// changes published by the 'book' webservice. Subscribing reloads it once
+		// more, which covers changes made while it was loading.
+		final BookTitleCache bookTitleCache = new BookTitleCache(new BookTitleDAO(hibernateBundle.getSessionFactory()));
+		System.out.println("Loaded " + bookTitleCache.load() + " book titles into the book title cache");
+		bookTitleCache.registerMetrics(environment.metrics());
+		CacheInvalidator.subscribe(jedisPool, CacheInvalidator.BOOK_CHANNEL, bookTitleCache);
+
+		// Tag id to name dictionary, reloaded when the tag table version changes
+		final TagDictionary tagDictionary = new TagDictionary(jedisPool);
+		tagDictionary.registerMetrics(environment.metrics());
+
+		// Per user reading statistics in redis, kept up to date by UserBookHelper
+		final ReadingStatsCache readingStats = new ReadingStatsCache(jedisPool);
 
 		// Helper for UnitOfWork
-		UserBookHelper ubHelper = new UnitOfWorkAwareProxyFactory(hibernateBundle)
+		UserBookHelper ubHelper = new UnitOfWorkAwareProxyFactory(hibernateBundle, replicaBundle)
 		    .create(UserBookHelper.class,
-		        new Class[] { UserBookDAO.class, UserDAO.class, TagDAO.class, TagMappingDAO.class },
-				new   Object[] { userBookDao, userDao, tagDao, tagMapDao });
+		        new Class[] { UserBookDAO.class, UserDAO.class, TagDAO.class, TagMappingDAO.class, BookTitleCache.class,
+		                      TagDictionary.class, ReadingStatsCache.class },
+				new   Object[] { userBookDao, userDao, tagDao, tagMapDao, bookTitleCache, tagDictionary, readingStats });
+
+		// Cached total counts of the list pages
+		final CountCache countCache = new CountCache(
+		    configuration.getCountRefreshInterval().toMilliseconds(),
+		    TimeUnit.MILLISECONDS,
+		    configuration.getCountCacheMaximumSize());
+		countCache.registerMetrics(environment.metrics());
 
 		// Register endpoints
-		environment.jersey().register(new UserBookResource(ubHelper));
+		environment.jersey().register(new UserBookResource(ubHelper, countCache));
 
 		// mapper for customized PersistenceException
 		environment.jersey().register(new PersistenceExceptionMapper());
@@ -2,6 +2,7 @@ package com.wpff;
 
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.*;
@@ -15,6 +16,7 @@ import io.federecio.dropwizard.swagger.SwaggerBundleConfiguration;
 
 // Jedis
 import com.bendb.dropwizard.redis.JedisFactory;
+import com.wpff.common.db.ReplicaDataSourceFactory;
 
 /**
  * Configuration for the 'user book' application.
@@ -42,6 +44,25 @@ public class UserBookConfiguration extends Configuration {
     this.redis = jedisFactory;
   }
 
+  /////////////////////////
+  // TOTAL COUNTS
+  // Cached totals of the list pages, recomputed after the refresh interval
+  @NotNull
+  @JsonProperty
+  private Duration countRefreshInterval = Duration.minutes(5);
+
+  @Min(1)
+  @JsonProperty
+  private int countCacheMaximumSize = 1000;
+
+  public Duration getCountRefreshInterval() {
+    return countRefreshInterval;
+  }
+
+  public int getCountCacheMaximumSize() {
+    return countCacheMaximumSize;
+  }
+
   /////////////////////////
   // DATABASE
   @Valid
@@ -58,6 +79,22 @@ public class UserBookConfiguration extends Configuration {
     this.database = dataSourceFactory;
   }
 
+  /////////////////////////
+  // READ REPLICA
+  // Optional. Read only requests use it, or the session factory of 'database'
+  // when it is not set.
+  @Valid
+  @JsonProperty
+  private ReplicaDataSourceFactory readDatabase;
+
+  public DataSourceFactory getReadDataSourceFactory() {
+    if (readDatabase == null) {
+      return database;
+    }
+    readDatabase.setPrimary(database);
+    return readDatabase;
+  }
+
 
 
 }
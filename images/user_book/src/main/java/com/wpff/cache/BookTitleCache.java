@@ -0,0 +1,324 @@
+package com.wpff.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.wpff.common.cache.CacheInvalidator;
+import com.wpff.db.BookTitleDAO;
+
+/**
+ * Process wide replica of book id to book title, so user books are listed and
+ * filtered by title without calling the 'book' webservice.
+ *
+ * Every title is loaded in bulk at startup. The 'book' webservice publishes
+ * the ids of created, updated and deleted books once they are committed, see
+ * CacheInvalidator, and those books are read again. The whole replica is
+ * reloaded each time the subscription is (re)established, as changes may have
+ * been missed meanwhile. A book that is still unknown, e.g. created just
+ * before its message arrives, is read when it is looked up.
+ *
+ * Titles are held in an open addressing map of primitive int keys, which takes
+ * a fraction of the memory of a HashMap for a million books.
+ */
+public class BookTitleCache implements CacheInvalidator.Listener {
+
+	/**
+	 * DAO to read the titles with
+	 */
+	private final BookTitleDAO bookTitleDAO;
+
+	/**
+	 * Guards titles and changes. Lookups share the read lock.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Book id to title
+	 */
+	private IntStringMap titles = new IntStringMap(16);
+
+	/**
+	 * Number of changes applied to titles. A lookup only adds the titles it
+	 * read when nothing changed meanwhile, so it can't undo a newer change.
+	 */
+	private long changes;
+
+	/**
+	 * Number of times every title was read
+	 */
+	private final AtomicLong loads = new AtomicLong();
+
+	/**
+	 * Number of looked up books that were not in the replica
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create new, empty cache. See load.
+	 *
+	 * @param bookTitleDAO
+	 *            DAO to read the titles with
+	 */
+	public BookTitleCache(BookTitleDAO bookTitleDAO) {
+		this.bookTitleDAO = bookTitleDAO;
+	}
+
+	/**
+	 * Replace the replica with every title in the database
+	 *
+	 * @return number of titles loaded
+	 */
+	public int load() {
+		IntStringMap loaded = new IntStringMap(16);
+		bookTitleDAO.forEachTitle(loaded::put);
+		loads.incrementAndGet();
+
+		lock.writeLock().lock();
+		try {
+			titles = loaded;
+			changes++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return loaded.size();
+	}
+
+	/**
+	 * Get the titles of some books. Books not in the replica are read with one
+	 * query.
+	 *
+	 * @param bookIds
+	 *            IDs of books
+	 * @return titles, indexed by book id. Books that don't exist are not in the
+	 *         map
+	 */
+	public Map<Integer, String> getTitles(Collection<Integer> bookIds) {
+		Map<Integer, String> found = new HashMap<Integer, String>(bookIds.size() * 2);
+		List<Integer> missing = new ArrayList<Integer>();
+		long seen;
+
+		lock.readLock().lock();
+		try {
+			seen = changes;
+			for (Integer bookId : bookIds) {
+				String title = titles.get(bookId);
+				if (title != null) {
+					found.put(bookId, title);
+				}
+				else {
+					missing.add(bookId);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		if (missing.isEmpty()) {
+			return found;
+		}
+
+		misses.addAndGet(missing.size());
+		Map<Integer, String> read = bookTitleDAO.findTitles(missing);
+		found.putAll(read);
+
+		lock.writeLock().lock();
+		try {
+			if (changes == seen) {
+				read.forEach(titles::put);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return found;
+	}
+
+	/**
+	 * Read again the books in a message from the 'book' webservice. The
+	 * message is a book id, or comma separated book ids.
+	 */
+	@Override
+	public void invalidate(String key) {
+		List<Integer> bookIds = new ArrayList<Integer>();
+		for (String bookId : key.split(",")) {
+			try {
+				bookIds.add(Integer.valueOf(bookId.trim()));
+			} catch (NumberFormatException e) {
+				System.out.println("Ignoring invalidation of unknown book id: " + bookId);
+			}
+		}
+
+		Map<Integer, String> read = bookTitleDAO.findTitles(bookIds);
+
+		lock.writeLock().lock();
+		try {
+			for (Integer bookId : bookIds) {
+				String title = read.get(bookId);
+				if (title != null) {
+					titles.put(bookId, title);
+				}
+				else {
+					titles.remove(bookId);
+				}
+			}
+			changes++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		load();
+	}
+
+	/**
+	 * @return number of titles in the replica
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return titles.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Register the size, load count and miss count of the cache.
+	 *
+	 * @param metrics
+	 *            Registry to add gauges to
+	 */
+	public void registerMetrics(MetricRegistry metrics) {
+		metrics.register(MetricRegistry.name("bookTitleCache", "size"), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return size();
+			}
+		});
+		metrics.register(MetricRegistry.name("bookTitleCache", "loads"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return loads.get();
+			}
+		});
+		metrics.register(MetricRegistry.name("bookTitleCache", "misses"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return misses.get();
+			}
+		});
+	}
+
+	/**
+	 * Map of positive int keys to strings, with linear probing. A key of 0
+	 * marks a free slot, so book ids, which start at 1, are stored as is.
+	 * Removal shifts the following entries back rather than leaving markers.
+	 * Not thread safe. Package private for its test.
+	 */
+	static final class IntStringMap {
+
+		private int[] keys;
+
+		private String[] values;
+
+		private int size;
+
+		IntStringMap(int capacity) {
+			keys = new int[capacity];
+			values = new String[capacity];
+		}
+
+		int size() {
+			return size;
+		}
+
+		String get(int key) {
+			int slot = slot(key);
+			return (keys[slot] == key) ? values[slot] : null;
+		}
+
+		void put(int key, String value) {
+			if (key <= 0) {
+				return;
+			}
+
+			int slot = slot(key);
+			if (keys[slot] != key) {
+				// Keep at most half the slots used so probes stay short
+				if ((size + 1) * 2 > keys.length) {
+					grow();
+					slot = slot(key);
+				}
+				keys[slot] = key;
+				size++;
+			}
+			values[slot] = value;
+		}
+
+		void remove(int key) {
+			int slot = slot(key);
+			if (keys[slot] != key) {
+				return;
+			}
+			size--;
+
+			int mask = keys.length - 1;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (keys[next] == 0) {
+					break;
+				}
+				// Move the entry back unless its home lies in (slot, next]
+				int home = home(keys[next]);
+				boolean stays = (next > slot) ? ((home > slot) && (home <= next)) : ((home > slot) || (home <= next));
+				if (!stays) {
+					keys[slot] = keys[next];
+					values[slot] = values[next];
+					slot = next;
+				}
+			}
+			keys[slot] = 0;
+			values[slot] = null;
+		}
+
+		/**
+		 * @return slot holding the key, or the free slot where it belongs
+		 */
+		private int slot(int key) {
+			int mask = keys.length - 1;
+			int slot = home(key);
+			while ((keys[slot] != 0) && (keys[slot] != key)) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private int home(int key) {
+			int hash = key * 0x9E3779B9;
+			return (hash ^ (hash >>> 16)) & (keys.length - 1);
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			String[] oldValues = values;
+			keys = new int[oldKeys.length * 2];
+			values = new String[oldValues.length * 2];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != 0) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+	}
+}
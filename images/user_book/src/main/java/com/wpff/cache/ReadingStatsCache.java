@@ -0,0 +1,297 @@
+package com.wpff.cache;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wpff.core.DatabaseUserBook;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Transaction;
+
+/**
+ * Reading statistics of each user, kept in redis so they are shared by every
+ * instance of this webservice.
+ *
+ * The statistics of a user are one redis hash of counters: the number of user
+ * books, thumbs up and thumbs down, user books per tag ('tag:ID') and user
+ * books added per month ('month:yyyy-MM'). Counters that drop to zero are
+ * removed, so the hash only grows with what the user actually has.
+ *
+ * The hash is built from the database the first time it is asked for, and
+ * from then on changed by the deltas of each created, updated and deleted
+ * user book. A delta for a user without a hash is dropped, as the hash will
+ * be built whole. Hashes expire after a while, which bounds the drift from a
+ * delta that raced with a build.
+ */
+public class ReadingStatsCache {
+
+	/**
+	 * Field with the number of user books
+	 */
+	public static final String TOTAL = "total";
+
+	/**
+	 * Field with the number of user books rated thumbs up
+	 */
+	public static final String THUMBS_UP = "up";
+
+	/**
+	 * Field with the number of user books rated thumbs down
+	 */
+	public static final String THUMBS_DOWN = "down";
+
+	/**
+	 * Prefix of the fields with the number of user books per tag id
+	 */
+	public static final String TAG_PREFIX = "tag:";
+
+	/**
+	 * Prefix of the fields with the number of user books added per month
+	 */
+	public static final String MONTH_PREFIX = "month:";
+
+	private static final String KEY_PREFIX = "stats:user:";
+
+	/**
+	 * Seconds a hash lives before it is built again
+	 */
+	private static final int TIME_TO_LIVE = 60 * 60 * 24;
+
+	private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+
+	/**
+	 * Times a delta is tried while other changes to the same hash get in
+	 * between
+	 */
+	private static final int MAX_ATTEMPTS = 5;
+
+	/**
+	 * Jedis pool
+	 */
+	private final JedisPool jedisPool;
+
+	/**
+	 * Create new cache
+	 *
+	 * @param jedisPool
+	 *            Jedis pool
+	 */
+	public ReadingStatsCache(JedisPool jedisPool) {
+		this.jedisPool = jedisPool;
+	}
+
+	/**
+	 * Get the counters of a user
+	 *
+	 * @param userId
+	 *            ID of user
+	 * @return counters, indexed by field. Null if the user has no hash yet or
+	 *         if redis is unavailable
+	 */
+	public Map<String, Long> get(int userId) {
+		Jedis jedis = null;
+		try {
+			jedis = jedisPool.getResource();
+			Map<String, String> values = jedis.hgetAll(KEY_PREFIX + userId);
+			if (values.isEmpty()) {
+				return null;
+			}
+
+			Map<String, Long> counters = new HashMap<String, Long>(values.size() * 2);
+			values.forEach((field, value) -> counters.put(field, Long.valueOf(value)));
+			return counters;
+		} catch (Exception e) {
+			System.out.println("Unable to get reading stats of user " + userId + ": " + e.getMessage());
+			return null;
+		} finally {
+			if (jedis != null) {
+				jedisPool.returnResource(jedis);
+			}
+		}
+	}
+
+	/**
+	 * Store the counters of a user, built from the database
+	 *
+	 * @param userId
+	 *            ID of user
+	 * @param counters
+	 *            Counters, indexed by field. Zero counters are left out
+	 */
+	public void put(int userId, Map<String, Long> counters) {
+		Map<String, String> values = new HashMap<String, String>(counters.size() * 2);
+		counters.forEach((field, count) -> {
+			if (count > 0) {
+				values.put(field, String.valueOf(count));
+			}
+		});
+		if (values.isEmpty()) {
+			return;
+		}
+
+		String key = KEY_PREFIX + userId;
+		Jedis jedis = null;
+		try {
+			jedis = jedisPool.getResource();
+			Transaction transaction = jedis.multi();
+			transaction.del(key);
+			transaction.hmset(key, values);
+			transaction.expire(key, TIME_TO_LIVE);
+			transaction.exec();
+		} catch (Exception e) {
+			System.out.println("Unable to store reading stats of user " + userId + ": " + e.getMessage());
+		} finally {
+			if (jedis != null) {
+				jedisPool.returnResource(jedis);
+			}
+		}
+	}
+
+	/**
+	 * Add a delta to the counters of a user, if they are built. Counters that
+	 * reach zero are removed.
+	 *
+	 * The hash is watched while its counters are read, and the changes are
+	 * made in one transaction, which is tried again if another change to the
+	 * hash got in between.
+	 *
+	 * @param userId
+	 *            ID of user
+	 * @param delta
+	 *            Change of each counter
+	 */
+	public void apply(int userId, Delta delta) {
+		Map<String, Long> counts = delta.changes();
+		if (counts.isEmpty()) {
+			return;
+		}
+
+		String key = KEY_PREFIX + userId;
+		String[] fields = counts.keySet().toArray(new String[counts.size()]);
+		Jedis jedis = null;
+		try {
+			jedis = jedisPool.getResource();
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				jedis.watch(key);
+				if (!jedis.exists(key)) {
+					// Not built, so the delta is dropped. Discarding unwatches the key.
+					jedis.multi().discard();
+					return;
+				}
+
+				List<String> values = jedis.hmget(key, fields);
+				Transaction transaction = jedis.multi();
+				for (int i = 0; i < fields.length; i++) {
+					long count = counts.get(fields[i]);
+					long current = (values.get(i) == null) ? 0 : Long.parseLong(values.get(i));
+					if (current + count <= 0) {
+						transaction.hdel(key, fields[i]);
+					} else {
+						transaction.hincrBy(key, fields[i], Math.toIntExact(count));
+					}
+				}
+				if (transaction.exec() != null) {
+					return;
+				}
+			}
+			System.out.println("Unable to update reading stats of user " + userId + ": too many concurrent changes");
+		} catch (Exception e) {
+			// The counters expire, and are then built again
+			System.out.println("Unable to update reading stats of user " + userId + ": " + e.getMessage());
+		} finally {
+			if (jedis != null) {
+				jedisPool.returnResource(jedis);
+			}
+		}
+	}
+
+	/**
+	 * @param dateAdded
+	 *            Date a user book was added
+	 * @return field of the month, e.g. 'month:2017-06'
+	 */
+	public static String monthField(Date dateAdded) {
+		return MONTH_PREFIX + MONTH.format(dateAdded.toInstant().atZone(ZoneId.systemDefault()));
+	}
+
+	/**
+	 * Change of the counters of one user
+	 */
+	public static class Delta {
+
+		private final Map<String, Long> counts = new HashMap<String, Long>();
+
+		/**
+		 * Add a user book, or remove it with a sign of -1, with its rating,
+		 * month and tags
+		 *
+		 * @param userBook
+		 *            User book
+		 * @param tagIds
+		 *            IDs of the user book's tags
+		 * @param sign
+		 *            1 to add, -1 to remove
+		 * @return this delta
+		 */
+		public Delta userBook(DatabaseUserBook userBook, int[] tagIds, int sign) {
+			add(TOTAL, sign);
+			rating(userBook.getRating(), sign);
+			if (userBook.getDateAdded() != null) {
+				add(monthField(userBook.getDateAdded()), sign);
+			}
+			for (int tagId : tagIds) {
+				add(TAG_PREFIX + tagId, sign);
+			}
+			return this;
+		}
+
+		/**
+		 * Count a rating, or uncount it with a sign of -1
+		 *
+		 * @param thumbsUp
+		 *            Rating
+		 * @param sign
+		 *            1 to add, -1 to remove
+		 * @return this delta
+		 */
+		public Delta rating(boolean thumbsUp, int sign) {
+			return add(thumbsUp ? THUMBS_UP : THUMBS_DOWN, sign);
+		}
+
+		/**
+		 * Count a tag, or uncount it with a sign of -1
+		 *
+		 * @param tagId
+		 *            ID of tag
+		 * @param sign
+		 *            1 to add, -1 to remove
+		 * @return this delta
+		 */
+		public Delta tag(int tagId, int sign) {
+			return add(TAG_PREFIX + tagId, sign);
+		}
+
+		private Delta add(String field, long count) {
+			counts.merge(field, count, Long::sum);
+			return this;
+		}
+
+		/**
+		 * @return change of each counter that changes, indexed by field
+		 */
+		private Map<String, Long> changes() {
+			Map<String, Long> changes = new HashMap<String, Long>(counts.size() * 2);
+			counts.forEach((field, count) -> {
+				if (count != 0) {
+					changes.put(field, count);
+				}
+			});
+			return changes;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.wpff.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.wpff.common.cache.TableVersion;
+import com.wpff.core.Tag;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Process wide dictionary of tag id to tag name, and back.
+ *
+ * The whole tag table is small and read on every converted user book, so it
+ * is held in memory. The dictionary remembers the version of the tag table it
+ * was loaded at, see TableVersion. The 'tag' webservice increments that
+ * version once a change is committed, so a lookup only reloads the table when
+ * the version moved, or when it is asked for a tag id it doesn't know yet. The
+ * version is read before the table, and the table is read on the primary, so
+ * the tags are never older than the version they are kept under.
+ *
+ * Each load publishes a new immutable Tags, so readers never lock.
+ */
+public class TagDictionary {
+
+	/**
+	 * Jedis pool, to read the version of the tag table
+	 */
+	private final JedisPool jedisPool;
+
+	/**
+	 * Current tags. Replaced, never changed.
+	 */
+	private volatile Tags tags = new Tags(null, Collections.<Tag> emptyList());
+
+	/**
+	 * Number of times the tag table was read
+	 */
+	private final AtomicLong loads = new AtomicLong();
+
+	/**
+	 * Create new dictionary. It is loaded by the first lookup.
+	 *
+	 * @param jedisPool
+	 *            Jedis pool, to read the version of the tag table
+	 */
+	public TagDictionary(JedisPool jedisPool) {
+		this.jedisPool = jedisPool;
+	}
+
+	/**
+	 * Get the current tags, reloading them if the tag table changed since they
+	 * were loaded. If redis is unavailable the tags are always reloaded.
+	 *
+	 * @param loader
+	 *            Reads every tag on the primary
+	 * @return current tags
+	 */
+	public Tags get(Supplier<Collection<Tag>> loader) {
+		String version = TableVersion.get(jedisPool, TableVersion.TAG);
+		Tags current = tags;
+		if ((version != null) && version.equals(current.version)) {
+			return current;
+		}
+		return load(version, loader);
+	}
+
+	/**
+	 * Get the current tags, reloading them if the tag table changed or if any
+	 * of the tag ids is unknown.
+	 *
+	 * @param tagIds
+	 *            IDs of the tags that will be looked up
+	 * @param loader
+	 *            Reads every tag on the primary
+	 * @return current tags
+	 */
+	public Tags get(Collection<Integer> tagIds, Supplier<Collection<Tag>> loader) {
+		Tags current = get(loader);
+		for (Integer tagId : tagIds) {
+			if (current.getName(tagId) == null) {
+				return load(current.version, loader);
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Add tags that this webservice just created, so they are known without a
+	 * reload. The version of the tag table is incremented once, as the 'tag'
+	 * webservice does, so that other instances and the tag ETags see them.
+	 * Tags already known are skipped.
+	 *
+	 * @param created
+	 *            Created tags
+	 */
+	public synchronized void putAll(Collection<Tag> created) {
+		TableVersion.increment(jedisPool, TableVersion.TAG);
+		Tags current = tags;
+		for (Tag tag : created) {
+			current = current.with(tag);
+		}
+		tags = current;
+	}
+
+	/**
+	 * Register the size and load count of the dictionary.
+	 *
+	 * @param metrics
+	 *            Registry to add gauges to
+	 */
+	public void registerMetrics(MetricRegistry metrics) {
+		metrics.register(MetricRegistry.name("tagDictionary", "size"), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return tags.ids.length;
+			}
+		});
+		metrics.register(MetricRegistry.name("tagDictionary", "loads"), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return loads.get();
+			}
+		});
+	}
+
+	/**
+	 * Read every tag and publish them
+	 */
+	private synchronized Tags load(String version, Supplier<Collection<Tag>> loader) {
+		Tags loaded = new Tags(version, loader.get());
+		loads.incrementAndGet();
+		tags = loaded;
+		return loaded;
+	}
+
+	/**
+	 * Immutable snapshot of the tag table. Tag ids are held in a sorted int
+	 * array with the names alongside, so an id is resolved by binary search
+	 * without boxing.
+	 */
+	public static class Tags {
+
+		/**
+		 * Version of the tag table this was loaded at. Null if unknown.
+		 */
+		private final String version;
+
+		/**
+		 * Sorted tag ids
+		 */
+		private final int[] ids;
+
+		/**
+		 * Name of the tag id at the same index
+		 */
+		private final String[] names;
+
+		/**
+		 * Tag name to tag id
+		 */
+		private final Map<String, Integer> idsByName;
+
+		Tags(String version, Collection<Tag> tags) {
+			this.version = version;
+
+			Tag[] sorted = tags.toArray(new Tag[tags.size()]);
+			Arrays.sort(sorted, (a, b) -> Integer.compare(a.getId(), b.getId()));
+
+			this.ids = new int[sorted.length];
+			this.names = new String[sorted.length];
+			Map<String, Integer> byName = new HashMap<String, Integer>(sorted.length * 2);
+			for (int i = 0; i < sorted.length; i++) {
+				ids[i] = sorted[i].getId();
+				names[i] = sorted[i].getName();
+				byName.put(names[i], ids[i]);
+			}
+			this.idsByName = Collections.unmodifiableMap(byName);
+		}
+
+		private Tags(String version, int[] ids, String[] names, Map<String, Integer> idsByName) {
+			this.version = version;
+			this.ids = ids;
+			this.names = names;
+			this.idsByName = idsByName;
+		}
+
+		/**
+		 * Get the name of a tag
+		 *
+		 * @param tagId
+		 *            ID of tag
+		 * @return name of the tag, or null if unknown
+		 */
+		public String getName(int tagId) {
+			int index = Arrays.binarySearch(ids, tagId);
+			return (index < 0) ? null : names[index];
+		}
+
+		/**
+		 * Get the id of a tag
+		 *
+		 * @param name
+		 *            Name of tag
+		 * @return ID of the tag, or null if unknown
+		 */
+		public Integer getId(String name) {
+			return idsByName.get(name);
+		}
+
+		/**
+		 * Copy with one more tag, at the same version
+		 */
+		private Tags with(Tag tag) {
+			int index = Arrays.binarySearch(ids, tag.getId());
+			if (index >= 0) {
+				return this;
+			}
+			index = -(index + 1);
+
+			int[] newIds = new int[ids.length + 1];
+			String[] newNames = new String[names.length + 1];
+			System.arraycopy(ids, 0, newIds, 0, index);
+			System.arraycopy(names, 0, newNames, 0, index);
+			newIds[index] = tag.getId();
+			newNames[index] = tag.getName();
+			System.arraycopy(ids, index, newIds, index + 1, ids.length - index);
+			System.arraycopy(names, index, newNames, index + 1, names.length - index);
+
+			Map<String, Integer> byName = new HashMap<String, Integer>(idsByName);
+			byName.put(tag.getName(), tag.getId());
+			return new Tags(version, newIds, newNames, Collections.unmodifiableMap(byName));
+		}
+	}
+}
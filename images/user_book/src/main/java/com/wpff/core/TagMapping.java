@@ -19,8 +19,13 @@ import javax.persistence.Table;
 	    		       query = "SELECT u FROM TagMapping u"),
 		@NamedQuery(name = "com.wpff.core.TagMapping.findByUserBookId",
 				   query = "SELECT u FROM TagMapping u WHERE u.user_book_id = :user_book_id"), 
+		@NamedQuery(name = "com.wpff.core.TagMapping.findTagIdsByUserBookIds",
+				   query = "SELECT u.user_book_id, u.tag_id FROM TagMapping u WHERE u.user_book_id IN (:user_book_ids) "
+				         + "ORDER BY u.user_book_id, u.tag_id"), 
 		@NamedQuery(name = "com.wpff.core.TagMapping.deleteUserBook",
-				    query = "DELETE FROM TagMapping u WHERE u.user_book_id = :user_book_id") 
+				    query = "DELETE FROM TagMapping u WHERE u.user_book_id = :user_book_id"), 
+		@NamedQuery(name = "com.wpff.core.TagMapping.deleteUserBookTags",
+				    query = "DELETE FROM TagMapping u WHERE u.user_book_id = :user_book_id AND u.tag_id IN (:tag_ids)") 
 	    })
 /**
  * Class to map a UserBook to a set of Tags.  Uses the 'tagmapping' table.
@@ -3,13 +3,17 @@ package com.wpff.core.beans;
 import java.util.Arrays;
 import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * UserBook bean that returned from various methods. It adds the 'userBookId'
  * and 'userId' to the PostUserBook class.
  *
  * This is used instead of normal UserBook as UserBook has no tags.
  *
+ * Fields that are null, e.g. not requested via 'fields', are left out.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class FullUserBook extends PostUserBook {
 
 	private int userBookId;
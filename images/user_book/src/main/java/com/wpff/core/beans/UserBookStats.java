@@ -0,0 +1,111 @@
+package com.wpff.core.beans;
+
+import java.util.Map;
+
+/**
+ * Reading statistics of a user, returned by GET /user_book/{user_id}/stats.
+ */
+public class UserBookStats {
+
+	private int userId;
+
+	private long total;
+
+	private long thumbsUp;
+
+	private long thumbsDown;
+
+	private Map<String, Long> tags;
+
+	private Map<String, Long> addedPerMonth;
+
+	/**
+	 * @return the userId
+	 */
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * @param userId the userId to set
+	 */
+	public void setUserId(int userId) {
+		this.userId = userId;
+	}
+
+	/**
+	 * @return number of user books
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param total the total to set
+	 */
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	/**
+	 * @return number of user books rated thumbs up
+	 */
+	public long getThumbsUp() {
+		return thumbsUp;
+	}
+
+	/**
+	 * @param thumbsUp the thumbsUp to set
+	 */
+	public void setThumbsUp(long thumbsUp) {
+		this.thumbsUp = thumbsUp;
+	}
+
+	/**
+	 * @return number of user books rated thumbs down
+	 */
+	public long getThumbsDown() {
+		return thumbsDown;
+	}
+
+	/**
+	 * @param thumbsDown the thumbsDown to set
+	 */
+	public void setThumbsDown(long thumbsDown) {
+		this.thumbsDown = thumbsDown;
+	}
+
+	/**
+	 * @return number of user books per tag name
+	 */
+	public Map<String, Long> getTags() {
+		return tags;
+	}
+
+	/**
+	 * @param tags the tags to set
+	 */
+	public void setTags(Map<String, Long> tags) {
+		this.tags = tags;
+	}
+
+	/**
+	 * @return number of user books added per month, as 'yyyy-MM', oldest first
+	 */
+	public Map<String, Long> getAddedPerMonth() {
+		return addedPerMonth;
+	}
+
+	/**
+	 * @param addedPerMonth the addedPerMonth to set
+	 */
+	public void setAddedPerMonth(Map<String, Long> addedPerMonth) {
+		this.addedPerMonth = addedPerMonth;
+	}
+
+	@Override
+	public String toString() {
+		return "UserBookStats [userId=" + userId + ", total=" + total + ", thumbsUp=" + thumbsUp + ", thumbsDown="
+				+ thumbsDown + ", tags=" + tags + ", addedPerMonth=" + addedPerMonth + "]";
+	}
+}
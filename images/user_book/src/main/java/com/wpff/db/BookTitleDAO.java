@@ -0,0 +1,92 @@
+package com.wpff.db;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+/**
+ * Reads the titles from the 'book' table, which the 'book' webservice owns.
+ * Both webservices use the same database, so the titles are read directly
+ * instead of through the 'book' webservice.
+ *
+ * Each call opens its own stateless session on the primary, so this works
+ * outside of a UnitOfWork, e.g. on the thread that receives book changes. The
+ * primary is read as the changes are announced as soon as they are committed,
+ * which a lagging replica may not have yet.
+ */
+public class BookTitleDAO {
+
+  private final SessionFactory sessionFactory;
+
+  /**
+   * @param sessionFactory
+   *          Session factory of the primary database
+   */
+  public BookTitleDAO(SessionFactory sessionFactory) {
+    this.sessionFactory = sessionFactory;
+  }
+
+  /**
+   * Stream the id and title of every book.
+   *
+   * @param consumer
+   *          Consumer of each book id and title
+   */
+  public void forEachTitle(BiConsumer<Integer, String> consumer) {
+    StatelessSession session = sessionFactory.openStatelessSession();
+    try {
+      // The MySQL driver only streams rows with a fetch size of MIN_VALUE
+      ScrollableResults results = session
+          .createNativeQuery("select book_id, title from book")
+          .setReadOnly(true)
+          .setFetchSize(Integer.MIN_VALUE)
+          .scroll(ScrollMode.FORWARD_ONLY);
+      try {
+        while (results.next()) {
+          consumer.accept(((Number) results.get(0)).intValue(), (String) results.get(1));
+        }
+      } finally {
+        results.close();
+      }
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Find the titles of some books.
+   *
+   * @param bookIds
+   *          IDs of books
+   * @return titles, indexed by book id. Books that don't exist are not in the
+   *         map
+   */
+  @SuppressWarnings("unchecked")
+  public Map<Integer, String> findTitles(Collection<Integer> bookIds) {
+    Map<Integer, String> titles = new HashMap<Integer, String>();
+    if (bookIds.isEmpty()) {
+      return titles;
+    }
+
+    StatelessSession session = sessionFactory.openStatelessSession();
+    try {
+      List<Object[]> rows = session
+          .createNativeQuery("select book_id, title from book where book_id in (:book_ids)")
+          .setParameterList("book_ids", bookIds)
+          .list();
+      for (Object[] row : rows) {
+        titles.put(((Number) row[0]).intValue(), (String) row[1]);
+      }
+    } finally {
+      session.close();
+    }
+    return titles;
+  }
+}
@@ -1,12 +1,15 @@
 package com.wpff.db;
 
+import com.wpff.common.db.ReplicaAwareDAO;
 import com.wpff.core.Tag;
 
-import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.MatchMode;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,10 +17,10 @@ import java.util.stream.Collectors;
 /**
  * Data access object for a Tag
  */
-public class TagDAO extends AbstractDAO<Tag> {
+public class TagDAO extends ReplicaAwareDAO<Tag> {
 
-  public TagDAO(SessionFactory factory) {
-    super(factory);
+  public TagDAO(SessionFactory factory, SessionFactory replicaFactory) {
+    super(factory, replicaFactory);
   }
 
   /**
@@ -57,6 +60,52 @@ public class TagDAO extends AbstractDAO<Tag> {
     return newtag;
   }
 
+  /**
+   * Create the tags that don't exist yet, with one batch of inserts, and read
+   * back all of them. A tag that already exists, or that another request
+   * creates at the same time, is left as is instead of failing on the unique
+   * name. The read back locks the rows, so it sees the latest committed tags
+   * rather than the transaction's snapshot, which under REPEATABLE READ may be
+   * older than a tag another request just committed.
+   *
+   * @param tagNames Names of tags
+   * @return Tags with the incoming names, created or not. The database
+   *         compares names ignoring case, so a name may come back with
+   *         different case
+   */
+  public List<Tag> createIfMissing(Collection<String> tagNames) {
+    List<Tag> tags = new ArrayList<Tag>(tagNames.size());
+    if (tagNames.isEmpty()) {
+      return tags;
+    }
+
+    currentSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "insert into tag (name) values (?) on duplicate key update tag_id = tag_id")) {
+        for (String tagName : tagNames) {
+          statement.setString(1, tagName);
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+
+      String placeholders = String.join(",", Collections.nCopies(tagNames.size(), "?"));
+      try (PreparedStatement statement = connection.prepareStatement(
+          "select tag_id, name, data from tag where name in (" + placeholders + ") for update")) {
+        int index = 1;
+        for (String tagName : tagNames) {
+          statement.setString(index++, tagName);
+        }
+        try (ResultSet rows = statement.executeQuery()) {
+          while (rows.next()) {
+            tags.add(new Tag(rows.getString(2), rows.getInt(1), rows.getString(3)));
+          }
+        }
+      }
+    });
+    return tags;
+  }
+
   /**
    * Update an existing tag
    *
@@ -88,6 +137,22 @@ public class TagDAO extends AbstractDAO<Tag> {
     return tagsMap;
   }
 
+  /**
+   * Find all tags on the primary, with a stateless session of its own, so
+   * they are never older than the version of the tag table that was read
+   * before them, even in a unit of work on a lagging replica.
+   *
+   * @return List of Tags, may be empty
+   */
+  public List<Tag> findAllOnPrimary() {
+    StatelessSession session = primarySessionFactory().openStatelessSession();
+    try {
+      return session.getNamedQuery("com.wpff.core.Tag.findAll").list();
+    } finally {
+      session.close();
+    }
+  }
+
 
   
 }
@@ -1,20 +1,24 @@
 package com.wpff.db;
 
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.SessionFactory;
 
+import com.wpff.common.db.ReplicaAwareDAO;
 import com.wpff.core.TagMapping;
 
-import io.dropwizard.hibernate.AbstractDAO;
-
 /**
  * Data access object for the TagMap table
  */
-public class TagMappingDAO extends AbstractDAO<TagMapping> {
+public class TagMappingDAO extends ReplicaAwareDAO<TagMapping> {
 
-	public TagMappingDAO(SessionFactory factory) {
-		super(factory);
+	public TagMappingDAO(SessionFactory factory, SessionFactory replicaFactory) {
+		super(factory, replicaFactory);
 	}
 
 	/**
@@ -43,6 +47,69 @@ public class TagMappingDAO extends AbstractDAO<TagMapping> {
     return tagMap;
   }
 
+  /**
+   * Find the tag ids of many user books with one query. The primary key of
+   * the tagmapping table starts with user_book_id, so this is a range read
+   * per user book.
+   * 
+   * @param userBookIds
+   *          user book ids
+   * @return tag ids, sorted, indexed by user book id. User books without tags
+   *         are not in the map
+   */
+  @SuppressWarnings("unchecked")
+  public Map<Integer, int[]> findTagIds(Collection<Integer> userBookIds) {
+    Map<Integer, int[]> tagIds = new HashMap<Integer, int[]>();
+    if (userBookIds.isEmpty()) {
+      return tagIds;
+    }
+
+    List<Object[]> rows = namedQuery("com.wpff.core.TagMapping.findTagIdsByUserBookIds")
+        .setParameterList("user_book_ids", userBookIds)
+        .list();
+
+    // Rows are ordered by user book id, so each user book's tags are a run
+    int start = 0;
+    while (start < rows.size()) {
+      int userBookId = (Integer) rows.get(start)[0];
+      int end = start;
+      int[] ids = new int[4];
+      while ((end < rows.size()) && ((Integer) rows.get(end)[0] == userBookId)) {
+        if (end - start == ids.length) {
+          ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[end - start] = (Integer) rows.get(end)[1];
+        end++;
+      }
+      tagIds.put(userBookId, Arrays.copyOf(ids, end - start));
+      start = end;
+    }
+    return tagIds;
+  }
+
+  /**
+   * Count a user's books by tag, for the reading statistics
+   * 
+   * @param userId
+   *          ID of user
+   * @return number of user books, indexed by tag id
+   */
+  @SuppressWarnings("unchecked")
+  public Map<Integer, Long> countByTag(int userId) {
+    List<Object[]> rows = currentSession()
+        .createNativeQuery("select tm.tag_id, count(*) from tagmapping tm "
+            + "join userbook ub on ub.user_book_id = tm.user_book_id "
+            + "where ub.user_id = :user_id group by tm.tag_id")
+        .setParameter("user_id", userId)
+        .list();
+
+    Map<Integer, Long> counts = new HashMap<Integer, Long>();
+    for (Object[] row : rows) {
+      counts.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+    }
+    return counts;
+  }
+
 	/**
 	 * Add a new tag mapping to the database.
 	 * 
@@ -54,6 +121,52 @@ public class TagMappingDAO extends AbstractDAO<TagMapping> {
 		return persist(tagMapping);
 	}
 	
+  /**
+   * Map a user book to tags, with one batch of inserts. Mappings that already
+   * exist, e.g. added by a concurrent request, are left as is.
+   * 
+   * @param userBookId
+   *          ID of user book
+   * @param tagIds
+   *          IDs of tags
+   */
+  public void addTagMappings(int userBookId, Collection<Integer> tagIds) {
+    if (tagIds.isEmpty()) {
+      return;
+    }
+
+    currentSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "insert into tagmapping (user_book_id, tag_id) values (?, ?) on duplicate key update tag_id = tag_id")) {
+        for (Integer tagId : tagIds) {
+          statement.setInt(1, userBookId);
+          statement.setInt(2, tagId);
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+    });
+  }
+
+  /**
+   * Remove some tags from a user book
+   * 
+   * @param userBookId
+   *          ID of user book
+   * @param tagIds
+   *          IDs of tags to remove
+   */
+  public void deleteTagMappings(int userBookId, Collection<Integer> tagIds) {
+    if (tagIds.isEmpty()) {
+      return;
+    }
+
+    namedQuery("com.wpff.core.TagMapping.deleteUserBookTags")
+      .setParameter("user_book_id", userBookId)
+      .setParameterList("tag_ids", tagIds)
+      .executeUpdate();
+  }
+
 	/**
 	 * Delete all tag mappings for the incoming user book
 	 * @param userBookId ID of user book to remove from tag mappings
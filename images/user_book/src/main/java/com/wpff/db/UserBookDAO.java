@@ -1,25 +1,44 @@
 package com.wpff.db;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.hibernate.Criteria;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 
+import com.wpff.common.db.ReplicaAwareDAO;
+import com.wpff.common.result.PropertyProjection;
 import com.wpff.common.result.Segment;
 import com.wpff.core.DatabaseUserBook;
-
-import io.dropwizard.hibernate.AbstractDAO;
+import com.wpff.core.TagMapping;
 
 /**
  * Data access object for a UserBook
  */
-public class UserBookDAO extends AbstractDAO<DatabaseUserBook> {
+public class UserBookDAO extends ReplicaAwareDAO<DatabaseUserBook> {
+
+	/**
+	 * Reads only the requested properties of user books
+	 */
+	private static final PropertyProjection<DatabaseUserBook> PROJECTION = new PropertyProjection<DatabaseUserBook>(DatabaseUserBook::new)
+			.property("userBookId", (userBook, value) -> userBook.setUserBookId((Integer) value))
+			.property("user_id",    (userBook, value) -> userBook.setUserId((Integer) value))
+			.property("bookId",     (userBook, value) -> userBook.setBookId((Integer) value))
+			.property("rating",     (userBook, value) -> userBook.setRating((Boolean) value))
+			.property("data",       (userBook, value) -> userBook.setData((String) value))
+			.property("dateAdded",  (userBook, value) -> userBook.setDateAdded((Date) value));
 
-	public UserBookDAO(SessionFactory factory) {
-		super(factory);
+	public UserBookDAO(SessionFactory factory, SessionFactory replicaFactory) {
+		super(factory, replicaFactory);
 	}
 
 	/**
@@ -34,46 +53,124 @@ public class UserBookDAO extends AbstractDAO<DatabaseUserBook> {
 	}
 
 	/**
-   * Find user books for incoming user
+   * Find user books for incoming user, optionally only those having any of
+   * the tags and those of the books. Filters are applied before paging.
    * 
    * @param userId
    *          ID of user
+   * @param tagIds
+   *          IDs of tags, the user book must have any of them. Null to not
+   *          filter by tag
+   * @param bookIds
+   *          IDs of books, the user book must be one of them. Null to not
+   *          filter by book
    * @param segment
-   *          Segment describing start and offset
+   *          Segment describing start, cursor and offset
+   * @param properties
+   *          Properties to read, must include the 'userBookId'. Null to read
+   *          whole user books
    * @return List of user book
    */
-	@SuppressWarnings({ "deprecation", "unchecked" })
 	public List<DatabaseUserBook> findBooksByUserId(Integer userId,
-	    Segment segment) {
-	    Integer offset = segment.getOffset();
-	    Integer limit = segment.getLimit();
+	    List<Integer> tagIds,
+	    List<Integer> bookIds,
+	    Segment segment,
+	    List<String> properties) {
+	    	if (matchesNothing(tagIds, bookIds)) {
+	    	  return new ArrayList<DatabaseUserBook>();
+	    	}
 
-	    	Criteria criteria = currentSession()
-        .createCriteria(DatabaseUserBook.class)
-        .add(Restrictions.eq("user_id", userId))
-        .setFirstResult(offset)
-        .setMaxResults(limit);
+	    	Criteria criteria = filter(userId, tagIds, bookIds)
+        .addOrder(Order.asc("userBookId"));
 
-	    	return criteria.list();
+	    	List<DatabaseUserBook> userBooks = PROJECTION.list(segment.apply(criteria, "userBookId"), properties);
+	    	if (!userBooks.isEmpty()) {
+	    	  segment.setNext(userBooks.size(), userBooks.get(userBooks.size() - 1).getUserBookId());
+	    	}
+	    	return userBooks;
 	}
 
   /**
-   * Get total number of user books
+   * Get total number of user books matching the same filters as
+   * findBooksByUserId
    * 
    * @param userId
    *          ID for user books
+   * @param tagIds
+   *          IDs of tags. Null to not filter by tag
+   * @param bookIds
+   *          IDs of books. Null to not filter by book
    * @return number of books
    */
-	public long getNumberOfUserBooks(Integer userId) {
-	    Criteria criteria = currentSession()
-				.createCriteria(DatabaseUserBook.class)
-				.add(Restrictions.eq("user_id", userId))
+	public long getNumberOfUserBooks(Integer userId, List<Integer> tagIds, List<Integer> bookIds) {
+	    if (matchesNothing(tagIds, bookIds)) {
+	      return 0;
+	    }
+
+	    Criteria criteria = filter(userId, tagIds, bookIds)
 				.setProjection(Projections.rowCount());
 	    
 	    Number numRows = (Number) criteria.uniqueResult();
 	    return numRows.longValue();
 	}
 
+  /**
+   * Get the IDs of all the books of a user
+   * 
+   * @param userId
+   *          ID of user
+   * @return book IDs, ordered by user book
+   */
+	@SuppressWarnings("unchecked")
+	public List<Integer> findBookIds(Integer userId) {
+	    return currentSession()
+	        .createCriteria(DatabaseUserBook.class)
+	        .add(Restrictions.eq("user_id", userId))
+	        .addOrder(Order.asc("userBookId"))
+	        .setProjection(Projections.property("bookId"))
+	        .list();
+	}
+
+	/**
+	 * Criteria for the user books of a user, filtered by tags and books
+	 *
+	 * @param userId
+	 *            ID of user
+	 * @param tagIds
+	 *            IDs of tags. Null to not filter by tag
+	 * @param bookIds
+	 *            IDs of books. Null to not filter by book
+	 * @return criteria
+	 */
+	@SuppressWarnings("deprecation")
+	private Criteria filter(Integer userId, List<Integer> tagIds, List<Integer> bookIds) {
+		Criteria criteria = currentSession()
+		    .createCriteria(DatabaseUserBook.class)
+		    .add(Restrictions.eq("user_id", userId));
+
+		if (bookIds != null) {
+			criteria.add(Restrictions.in("bookId", bookIds));
+		}
+
+		if (tagIds != null) {
+			// User books having any of the tags. A subquery rather than a join,
+			// so a user book with several of the tags is still one row. It reads
+			// the (tag_id, user_book_id) index of tagmapping.
+			DetachedCriteria tagged = DetachedCriteria.forClass(TagMapping.class)
+			    .add(Restrictions.in("tag_id", tagIds))
+			    .setProjection(Projections.property("user_book_id"));
+			criteria.add(Subqueries.propertyIn("userBookId", tagged));
+		}
+		return criteria;
+	}
+
+	/**
+	 * @return true if a filter is an empty list, which no user book matches
+	 */
+	private static boolean matchesNothing(List<Integer> tagIds, List<Integer> bookIds) {
+		return ((tagIds != null) && tagIds.isEmpty()) || ((bookIds != null) && bookIds.isEmpty());
+	}
+
 	
 	/**
 	 * Persists a new UserBook into the backing DB.
@@ -96,6 +193,53 @@ public class UserBookDAO extends AbstractDAO<DatabaseUserBook> {
 		currentSession().saveOrUpdate(userBook);
 	}
 
+  /**
+   * Count a user's books by rating, for the reading statistics
+   * 
+   * @param userId
+   *          ID of user
+   * @return number of user books, indexed by rating (true for thumbs up)
+   */
+  @SuppressWarnings("unchecked")
+  public Map<Boolean, Long> countByRating(Integer userId) {
+    List<Object[]> rows = currentSession()
+        .createCriteria(DatabaseUserBook.class)
+        .add(Restrictions.eq("user_id", userId))
+        .setProjection(Projections.projectionList()
+            .add(Projections.groupProperty("rating"))
+            .add(Projections.rowCount()))
+        .list();
+
+    Map<Boolean, Long> counts = new HashMap<Boolean, Long>();
+    for (Object[] row : rows) {
+      counts.put((Boolean) row[0], (Long) row[1]);
+    }
+    return counts;
+  }
+
+  /**
+   * Count a user's books by the month they were added, for the reading
+   * statistics. User books without a date are left out.
+   * 
+   * @param userId
+   *          ID of user
+   * @return number of user books, indexed by month as 'yyyy-MM'
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Long> countByMonth(Integer userId) {
+    List<Object[]> rows = currentSession()
+        .createNativeQuery("select date_format(date_added, '%Y-%m'), count(*) from userbook "
+            + "where user_id = :user_id and date_added is not null group by 1")
+        .setParameter("user_id", userId)
+        .list();
+
+    Map<String, Long> counts = new HashMap<String, Long>();
+    for (Object[] row : rows) {
+      counts.put((String) row[0], ((Number) row[1]).longValue());
+    }
+    return counts;
+  }
+
 	/**
 	 * Delete userBook from database.
 	 *
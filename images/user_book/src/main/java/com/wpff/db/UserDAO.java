@@ -7,18 +7,17 @@ import org.hibernate.SessionFactory;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Restrictions;
 
+import com.wpff.common.db.ReplicaAwareDAO;
 import com.wpff.core.User;
 
-import io.dropwizard.hibernate.AbstractDAO;
-
 
 /**
  * Data access object for a User
  */
-public class UserDAO extends AbstractDAO<User> {
+public class UserDAO extends ReplicaAwareDAO<User> {
 
-  public UserDAO(SessionFactory factory) {
-    super(factory);
+  public UserDAO(SessionFactory factory, SessionFactory replicaFactory) {
+    super(factory, replicaFactory);
   }
 
   /**
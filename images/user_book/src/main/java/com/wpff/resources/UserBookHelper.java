@@ -1,13 +1,18 @@
 package com.wpff.resources;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.NotFoundException;
@@ -17,12 +22,12 @@ import javax.ws.rs.core.SecurityContext;
 
 // utils
 import org.apache.commons.beanutils.BeanUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wpff.cache.BookTitleCache;
+import com.wpff.cache.ReadingStatsCache;
+import com.wpff.cache.TagDictionary;
+import com.wpff.common.db.ReplicaHibernateBundle;
+import com.wpff.common.result.FieldSet;
 import com.wpff.common.result.Segment;
 import com.wpff.core.DatabaseUserBook;
 import com.wpff.core.Tag;
@@ -30,6 +35,7 @@ import com.wpff.core.TagMapping;
 import com.wpff.core.User;
 import com.wpff.core.beans.FullUserBook;
 import com.wpff.core.beans.PostUserBook;
+import com.wpff.core.beans.UserBookStats;
 import com.wpff.db.TagDAO;
 import com.wpff.db.TagMappingDAO;
 import com.wpff.db.UserBookDAO;
@@ -63,15 +69,36 @@ public class UserBookHelper {
 	 */
 	private final TagMappingDAO tagMappingDAO;
 
-	public UserBookHelper(UserBookDAO userBookDAO, UserDAO userDAO, TagDAO tagDAO, TagMappingDAO tagMapDAO) {
+	/**
+	 * In memory book id to title replica, so titles resolve without calling
+	 * the 'book' webservice
+	 */
+	private final BookTitleCache bookTitleCache;
+
+	/**
+	 * In memory tag id to name dictionary, so tags resolve without reading the
+	 * tag table
+	 */
+	private final TagDictionary tagDictionary;
+
+	/**
+	 * Reading statistics of each user, changed along with the user books
+	 */
+	private final ReadingStatsCache readingStats;
+
+	public UserBookHelper(UserBookDAO userBookDAO, UserDAO userDAO, TagDAO tagDAO, TagMappingDAO tagMapDAO,
+			BookTitleCache bookTitleCache, TagDictionary tagDictionary, ReadingStatsCache readingStats) {
 		this.tagDAO = tagDAO;
 		this.userBookDAO = userBookDAO;
 		this.userDAO = userDAO;
 		this.tagMappingDAO = tagMapDAO;
+		this.bookTitleCache = bookTitleCache;
+		this.tagDictionary = tagDictionary;
+		this.readingStats = readingStats;
 	}
 
 	/**
-	 * Create a UserBook in the database. Tags are not created at this time.
+	 * Create a UserBook in the database, with its tags, in one transaction.
 	 *
 	 * @param userBookBean
 	 *            Incoming bean with UserBook information
@@ -94,30 +121,38 @@ public class UserBookHelper {
 		userBookToCreate.setUserId(userId.get());
 
 		// Create user book in DB
-		return this.userBookDAO.create(userBookToCreate);
+		DatabaseUserBook created = this.userBookDAO.create(userBookToCreate);
+		updateStats(created.getUserId(), new ReadingStatsCache.Delta().userBook(created, new int[0], 1));
+
+		if (userBookBean.getTags() != null) {
+			setTags(created.getUserBookId(), userBookBean.getTags());
+		}
+		return created;
 	}
 	
 	
   /**
-   * Update a UserBook in the database
+   * Update a UserBook in the database, with its tags if the bean has them, in
+   * one transaction
    * 
    * @param userBookBean
    *          Bean with new data
    * @param userBookId
    *          ID of user book
-   * @return
+   * @return true if the tags of the user book changed
    * @throws IllegalAccessException
    * @throws IllegalArgumentException
    * @throws InvocationTargetException
    */
   @UnitOfWork
-  DatabaseUserBook updateUserBook(PostUserBook userBookBean, int userBookId) throws IllegalAccessException,
+  boolean updateUserBook(PostUserBook userBookBean, int userBookId) throws IllegalAccessException,
       IllegalArgumentException, InvocationTargetException {
     // Grab existing user book
     DatabaseUserBook userBookToUpdate = this.userBookDAO.findById(userBookId).orElseThrow(
         () -> new NotFoundException("No UserBook by id '" + userBookId + "'"));
 
     // Copy non null values over
+    boolean oldRating = userBookToUpdate.getRating();
     BeanUtils.copyProperty(userBookToUpdate, "data", userBookBean.getData());
     if (userBookBean.getRating() != null) {
       BeanUtils.copyProperty(userBookToUpdate, "rating", userBookBean.getRating());
@@ -125,46 +160,118 @@ public class UserBookHelper {
 
     // Update book in DB
     this.userBookDAO.update(userBookToUpdate);
+    if (userBookToUpdate.getRating() != oldRating) {
+      updateStats(userBookToUpdate.getUserId(), new ReadingStatsCache.Delta()
+          .rating(oldRating, -1)
+          .rating(userBookToUpdate.getRating(), 1));
+    }
 
-    return userBookToUpdate;
+    List<String> tags = userBookBean.getTags();
+    return (tags != null) && setTags(userBookId, tags);
   }
   
   /**
    * Get total number of userbooks
    * @param userId User to get number of books for
+   * @param tagIds IDs of tags, see getUserBooksForUser. May be null
+   * @param bookIds IDs of books, see getUserBooksForUser. May be null
    * @return Number of userbooks for user
    */
-  	@UnitOfWork
-  long getTotalNumberUserBooks(Integer userId) {
-    return userBookDAO.getNumberOfUserBooks(userId);
+  	@UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  long getTotalNumberUserBooks(Integer userId, List<Integer> tagIds, List<Integer> bookIds) {
+    return userBookDAO.getNumberOfUserBooks(userId, tagIds, bookIds);
+  }
+
+  /**
+   * Get the IDs of tags by name, via the tag dictionary. Unknown tags are left
+   * out.
+   * 
+   * @param tagNames
+   *          Names of tags
+   * @return IDs of the known tags. May be empty
+   */
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  List<Integer> findTagIds(List<String> tagNames) {
+    TagDictionary.Tags tags = tagDictionary.get(this::readAllTags);
+
+    List<Integer> tagIds = new ArrayList<Integer>(tagNames.size());
+    for (String tagName : tagNames) {
+      Integer tagId = tags.getId(tagName);
+      if (tagId != null) {
+        tagIds.add(tagId);
+      }
+    }
+    return tagIds;
+  }
+
+  /**
+   * Get the IDs of the user's books whose title contains the incoming title,
+   * ignoring case. The titles come from the local book title replica.
+   * 
+   * @param userId
+   *          ID of user
+   * @param title
+   *          Title, or part of it
+   * @return IDs of matching books. May be empty
+   */
+  @UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
+  List<Integer> findBookIdsByTitle(Integer userId, String title) {
+    List<Integer> bookIds = userBookDAO.findBookIds(userId);
+    String query = title.toLowerCase(Locale.ROOT);
+
+    List<Integer> matching = new ArrayList<Integer>();
+    Map<Integer, String> titles = bookTitleCache.getTitles(bookIds);
+    for (Integer bookId : bookIds) {
+      String bookTitle = titles.get(bookId);
+      if ( (bookTitle != null) && bookTitle.toLowerCase(Locale.ROOT).contains(query) ) {
+        matching.add(bookId);
+      }
+    }
+    return matching;
   }
 
 	/**
    * Get list of UserBooks for the requested User id
    * 
-   * @param authString
-   *          Authentication header which is necessary for a REST call to 'book'
-   *          web service
    * @param userId
    *          ID of user to get books for
+   * @param tagIds
+   *          IDs of tags, only user books having any of them are returned. Null
+   *          to not filter by tag
+   * @param bookIds
+   *          IDs of books, only user books of them are returned. Null to not
+   *          filter by book
    * @param desiredSegment
    *          offset and limit for the query
+   * @param fields
+   *          Fields to return. The tags and title are only looked up when
+   *          requested
    * @return List of UserBooks
    */
-	@UnitOfWork
+	@UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)
 	List<FullUserBook> getUserBooksForUser(
-	    String authString, 
 	    Integer userId,
-	    Segment desiredSegment)
+	    List<Integer> tagIds,
+	    List<Integer> bookIds,
+	    Segment desiredSegment,
+	    FieldSet fields)
 	    throws IllegalAccessException, InvocationTargetException {
 		List<FullUserBook> userBooks = new ArrayList<FullUserBook>();
 
-		// Get list of books in db
-		List<DatabaseUserBook> booksInDatabase = userBookDAO.findBooksByUserId(userId, desiredSegment);
+		// Get list of books in db, only the columns of the requested fields
+		List<DatabaseUserBook> booksInDatabase = userBookDAO.findBooksByUserId(userId, tagIds, bookIds, desiredSegment,
+				UserBookMapper.properties(fields));
+
+		// Tags of the whole page in one query
+		List<Integer> userBookIds = booksInDatabase.stream().map(DatabaseUserBook::getUserBookId).collect(Collectors.toList());
+		UserBookTags tags = fields.contains("tags") ? findTags(userBookIds) : null;
+
+		// Titles of the whole page from the local replica
+		Map<Integer, String> titles = fields.contains("title") ? findTitles(booksInDatabase) : null;
 
 		// convert each book into a FullUserBook
 		for (DatabaseUserBook dbBook : booksInDatabase) {
-		  userBooks.add(convert(dbBook, authString));
+		  userBooks.add(convert(dbBook, fields, tags, titles));
 		}
 
 		return userBooks;
@@ -176,20 +283,19 @@ public class UserBookHelper {
 	 *
 	 * @param userBookId
 	 *            ID of user book to retrieve
-   * @param authString
-   *          Authentication header which is necessary for a REST call to 'book'
-   *          web service
 	 * @return GetUserBook containing all UserBook info and tags
 	 * @throws InvocationTargetException
 	 * @throws IllegalAccessException
 	 */
 	@UnitOfWork
-	FullUserBook getUserBookById(String authString, int userBookId) throws IllegalAccessException, InvocationTargetException {
+	FullUserBook getUserBookById(int userBookId) throws IllegalAccessException, InvocationTargetException {
 	  // Get db book
 		DatabaseUserBook bookInDb = this.userBookDAO.findById(userBookId).orElseThrow(
 				() -> new NotFoundException("No UserBook by id '" + userBookId + "'"));
 
-		return convert(bookInDb, authString);
+		UserBookTags tags = findTags(Collections.singletonList(userBookId));
+		Map<Integer, String> titles = findTitles(Collections.singletonList(bookInDb));
+		return convert(bookInDb, FieldSet.all(), tags, titles);
 	}
 
 
@@ -206,45 +312,135 @@ public class UserBookHelper {
 		DatabaseUserBook bookInDb = this.userBookDAO.findById(userBookId).orElseThrow(
 				() -> new NotFoundException("No UserBook by id '" + userBookId + "'"));
 
+		int[] tagIds = this.tagMappingDAO.findTagIds(Collections.singletonList(userBookId)).get(userBookId);
+
 		this.userBookDAO.delete(bookInDb);
 
 		// Delete tag mappings from tagmapping table
 		this.tagMappingDAO.deleteTagMappingByUserBookId(userBookId);
+
+		updateStats(bookInDb.getUserId(),
+				new ReadingStatsCache.Delta().userBook(bookInDb, (tagIds == null) ? new int[0] : tagIds, -1));
 	}
 
 	
 	/**
-	 * Get map of Tags from database
+	 * Set the tags of a user book, in the caller's transaction, so the user
+	 * book and its tags are committed together. Only the difference to
+	 * the current tags is written: missing tags are created and new mappings
+	 * inserted with batches, and mappings of dropped tags deleted with one
+	 * statement. Tags are matched by name ignoring case, as the database does.
 	 *
-	 * @return Map of tags indexed by tag name
+	 * @param userBookId
+	 *            ID of user book
+	 * @param tagNames
+	 *            Names of the tags. Duplicates are ignored
+	 * @return true if the tags of the user book changed
 	 */
-	@UnitOfWork
-	Map<String, Tag> getAllTags() {
-		Map<String, Tag> tagsInDbMap = this.tagDAO.findAll();
-		return tagsInDbMap;
+	private boolean setTags(int userBookId, Collection<String> tagNames) {
+		DatabaseUserBook userBook = this.userBookDAO.findById(userBookId).orElseThrow(
+				() -> new NotFoundException("No UserBook by id '" + userBookId + "'"));
+
+		// Wanted tag ids, creating the tags that are unknown
+		Set<Integer> wanted = new HashSet<Integer>();
+		Set<String> unknown = new LinkedHashSet<String>();
+		TagDictionary.Tags tags = tagDictionary.get(this::readAllTags);
+		for (String tagName : tagNames) {
+			Integer tagId = tags.getId(tagName);
+			if (tagId != null) {
+				wanted.add(tagId);
+			}
+			else {
+				unknown.add(tagName);
+			}
+		}
+
+		if (!unknown.isEmpty()) {
+			List<Tag> created = new ArrayList<Tag>();
+			for (Tag tag : this.tagDAO.createIfMissing(unknown)) {
+				wanted.add(tag.getId());
+				if (tags.getName(tag.getId()) == null) {
+					created.add(tag);
+				}
+			}
+			if (!created.isEmpty()) {
+				this.tagDAO.afterCommit(() -> tagDictionary.putAll(created));
+			}
+		}
+
+		// Difference to the current tags
+		Set<Integer> current = new HashSet<Integer>();
+		int[] currentIds = this.tagMappingDAO.findTagIds(Collections.singletonList(userBookId)).get(userBookId);
+		if (currentIds != null) {
+			for (int tagId : currentIds) {
+				current.add(tagId);
+			}
+		}
+
+		Set<Integer> added = new HashSet<Integer>(wanted);
+		added.removeAll(current);
+		Set<Integer> removed = new HashSet<Integer>(current);
+		removed.removeAll(wanted);
+
+		this.tagMappingDAO.addTagMappings(userBookId, added);
+		this.tagMappingDAO.deleteTagMappings(userBookId, removed);
+
+		ReadingStatsCache.Delta delta = new ReadingStatsCache.Delta();
+		added.forEach(tagId -> delta.tag(tagId, 1));
+		removed.forEach(tagId -> delta.tag(tagId, -1));
+		updateStats(userBook.getUserId(), delta);
+
+		return !added.isEmpty() || !removed.isEmpty();
 	}
 
 	/**
-	 * Create a single TagMapping in the database.
+	 * Get the reading statistics of a user. They are built from the database
+	 * when redis doesn't have them, and from then on kept up to date as user
+	 * books change. The primary is read, as the changes are counted once they
+	 * commit.
 	 *
-	 * @param tagMapping
-	 *            New tag map
-	 * @return created TagMap
+	 * @param userId
+	 *            ID of user
+	 * @return statistics of the user
 	 */
-	@UnitOfWork
-	TagMapping createTagMapping(TagMapping tagMapping) {
-		return this.tagMappingDAO.addTagMapingEntry(tagMapping);
-	}
+	@UnitOfWork(readOnly = true)
+	UserBookStats getStats(int userId) {
+		Map<String, Long> counters = readingStats.get(userId);
+		if (counters == null) {
+			counters = buildStats(userId);
+			readingStats.put(userId, counters);
+		}
 
-  /**
-   * Delete all tags for a specific user book.
-   * 
-   * @param userBookId
-   *          ID of user book
-   */
-  @UnitOfWork
-  void deleteTagMappingsForUserBook(int userBookId) {
-    this.tagMappingDAO.deleteTagMappingByUserBookId(userBookId);
+		UserBookStats stats = new UserBookStats();
+		stats.setUserId(userId);
+		stats.setTotal(counters.getOrDefault(ReadingStatsCache.TOTAL, 0L));
+		stats.setThumbsUp(counters.getOrDefault(ReadingStatsCache.THUMBS_UP, 0L));
+		stats.setThumbsDown(counters.getOrDefault(ReadingStatsCache.THUMBS_DOWN, 0L));
+
+		// Tag ids resolve to names via the tag dictionary, months sort by name
+		Map<Integer, Long> tagCounts = new HashMap<Integer, Long>();
+		Map<String, Long> monthCounts = new TreeMap<String, Long>();
+		counters.forEach((field, count) -> {
+			if (field.startsWith(ReadingStatsCache.TAG_PREFIX)) {
+				tagCounts.put(Integer.valueOf(field.substring(ReadingStatsCache.TAG_PREFIX.length())), count);
+			}
+			else if (field.startsWith(ReadingStatsCache.MONTH_PREFIX)) {
+				monthCounts.put(field.substring(ReadingStatsCache.MONTH_PREFIX.length()), count);
+			}
+		});
+
+		TagDictionary.Tags tags = tagDictionary.get(tagCounts.keySet(), this::readAllTags);
+		Map<String, Long> tagNames = new TreeMap<String, Long>();
+		tagCounts.forEach((tagId, count) -> {
+			String name = tags.getName(tagId);
+			if (name != null) {
+				tagNames.put(name, count);
+			}
+		});
+		stats.setTags(tagNames);
+		stats.setAddedPerMonth(monthCounts);
+
+		return stats;
 	}
 
 	/**
@@ -257,24 +453,10 @@ public class UserBookHelper {
 		return this.tagMappingDAO.findAll();
 	}
 
-	/**
-	 * Create a new Tag in the database.
-	 * 
-	 * @param tagName
-	 *            Name of tag to create
-	 * @return Newly created Tag from database
-	 */
-	@UnitOfWork
-	Tag createTag(String tagName) {
-		Tag t = new Tag();
-		t.setName(tagName);
-		Tag newtag = this.tagDAO.create(t);
-		return newtag;
-	}
-
 	/**
 	 * Verify the userId in the path matches the user from the security context. 
-	 * Or if the context user is in group 'admin'.
+	 * Or if the context user is in group 'admin'. This reads the user table, so
+	 * the resource first compares the user id carried by the token.
 	 *
 	 * @param context
 	 *            SecurityContext to grab username from
@@ -317,115 +499,154 @@ public class UserBookHelper {
    * 
    * @param dbBook
    *          Book to convert
-   * @param authString
-   *          Authentication header which is necessary for a REST call to 'book'
-   *          web service
+   * @param fields
+   *          Fields to return
+   * @param tags
+   *          Tags of the user books being converted. Only used when the tags
+   *          are requested
+   * @param titles
+   *          Titles of the books being converted, indexed by book id. Only
+   *          used when the title is requested
    * @return
    */
-  private FullUserBook convert(DatabaseUserBook dbBook, String authString) throws IllegalAccessException,
-      InvocationTargetException {
-    FullUserBook bookToReturn = new FullUserBook();
-
-    // Copy over bean values - copy(destination, source)
-    BeanUtils.copyProperties(bookToReturn, dbBook);
+  private FullUserBook convert(DatabaseUserBook dbBook, FieldSet fields, UserBookTags tags, Map<Integer, String> titles) {
+    FullUserBook bookToReturn = UserBookMapper.toFullUserBook(dbBook, fields);
 
     // Add tags from tagmapping table
-    addTagsToUserBook(bookToReturn);
+    if (fields.contains("tags")) {
+      bookToReturn.setTags(tags.names(dbBook.getUserBookId()));
+    }
 
     // Get title
-    String title = getTitle(authString, dbBook.getBookId());
-    bookToReturn.setTitle(title);
+    if (fields.contains("title")) {
+      String title = titles.get(dbBook.getBookId());
+      if (title == null) {
+        System.out.println("Unable to get book's title for id: " + dbBook.getBookId());
+        title = "";
+      }
+      bookToReturn.setTitle(title);
+    }
 
     return bookToReturn;
   }
 
 	/**
-	 * Add tags from database to userbook
+	 * Get the tags of user books. The tag ids of all the user books are read
+	 * with one query, and resolved into names via the tag dictionary.
 	 *
+	 * @param userBookIds
+	 *            IDs of user books
+	 * @return tags of the user books
 	 */
-	private void addTagsToUserBook(FullUserBook userBook) {
-		// Get tag mappings for user book
-		List<TagMapping> tagMappings = this.tagMappingDAO.findTagMappings(userBook.getUserBookId());
+	private UserBookTags findTags(List<Integer> userBookIds) {
+		Map<Integer, int[]> tagIds = this.tagMappingDAO.findTagIds(userBookIds);
+
+		Set<Integer> allTagIds = new HashSet<Integer>();
+		for (int[] ids : tagIds.values()) {
+			for (int tagId : ids) {
+				allTagIds.add(tagId);
+			}
+		}
 
-		// Get tag IDs for the user book
-		List<Integer> tagIds = tagMappings.stream().map(TagMapping::getTagId).collect(Collectors.toList());
+		return new UserBookTags(tagIds, tagDictionary.get(allTagIds, this::readAllTags));
+	}
 
-		// Get all tags in database and convert into a map keyed by tagID
-		Map<String, Tag> allTags = this.tagDAO.findAll();
-		Map<Integer, Tag> tagsIndexById = allTags.values().stream().collect(Collectors.toMap(Tag::getId, p -> p));
+	/**
+	 * Tag ids of some user books, with the tags to name them
+	 */
+	private static class UserBookTags {
+		private final Map<Integer, int[]> tagIds;
 
-		// Correlate tag ids from tagMappings into tag names
-		List<String> tagNames = tagIds.stream().map(e -> tagsIndexById.get(e).getName()).collect(Collectors.toList());
+		private final TagDictionary.Tags tags;
 
-		userBook.setTags(tagNames);
+		UserBookTags(Map<Integer, int[]> tagIds, TagDictionary.Tags tags) {
+			this.tagIds = tagIds;
+			this.tags = tags;
+		}
+
+		/**
+		 * @return names of the user book's tags. Unknown tags are left out
+		 */
+		List<String> names(int userBookId) {
+			int[] ids = tagIds.get(userBookId);
+			if (ids == null) {
+				return new ArrayList<String>();
+			}
+
+			List<String> names = new ArrayList<String>(ids.length);
+			for (int tagId : ids) {
+				String name = tags.getName(tagId);
+				if (name != null) {
+					names.add(name);
+				}
+			}
+			return names;
+		}
+	}
+
+	/**
+	 * Read every tag on the primary, for the tag dictionary.
+	 *
+	 * @return all tags
+	 */
+	private Collection<Tag> readAllTags() {
+		return this.tagDAO.findAllOnPrimary();
 	}
 	
 	
 	
-	 /**
-   * Retrieve the book title from the 'book' webservice for the incoming
-   * book id
+	/**
+	 * Count the reading statistics of a user from the database. Needs a
+	 * session.
+	 *
+	 * @param userId
+	 *            ID of user
+	 * @return counters, indexed by the fields of ReadingStatsCache
+	 */
+	private Map<String, Long> buildStats(int userId) {
+		Map<String, Long> counters = new HashMap<String, Long>();
+
+		long total = 0;
+		for (Map.Entry<Boolean, Long> entry : this.userBookDAO.countByRating(userId).entrySet()) {
+			total += entry.getValue();
+			if (entry.getKey() != null) {
+				counters.put(entry.getKey() ? ReadingStatsCache.THUMBS_UP : ReadingStatsCache.THUMBS_DOWN, entry.getValue());
+			}
+		}
+		counters.put(ReadingStatsCache.TOTAL, total);
+
+		this.userBookDAO.countByMonth(userId).forEach(
+				(month, count) -> counters.put(ReadingStatsCache.MONTH_PREFIX + month, count));
+		this.tagMappingDAO.countByTag(userId).forEach(
+				(tagId, count) -> counters.put(ReadingStatsCache.TAG_PREFIX + tagId, count));
+		return counters;
+	}
+
+	/**
+	 * Change the reading statistics of a user once the current transaction
+	 * commits
+	 *
+	 * @param userId
+	 *            ID of user
+	 * @param delta
+	 *            Change of the statistics
+	 */
+	private void updateStats(int userId, ReadingStatsCache.Delta delta) {
+		this.userBookDAO.afterCommit(() -> readingStats.apply(userId, delta));
+	}
+
+  /**
+   * Get the titles of the books of some user books from the local book title
+   * replica
    * 
-   * @param authString
-   *          Authentication header which is necessary for a REST call to 'book'
-   *          web service
-   * @param bookId
-   *          ID of book to get title for
-   * @return
+   * @param userBooks
+   *          User books
+   * @return titles, indexed by book id. Books that don't exist are not in the
+   *         map
    */
-  private String getTitle(String authString, int bookId) {
-    try {
-      // Going to the 'book' web service directly
-      String url = "http://book:8080/book/" + bookId;
-      
-      HttpClient client = HttpClientBuilder.create().build();
-      HttpGet request = new HttpGet(url);
-
-      // add request header
-      request.addHeader("User-Agent", "BookAgent");
-      request.addHeader("content-type", "application/json");
-      request.addHeader("Authorization", authString);
-      
-      // Execute request
-      HttpResponse response = client.execute(request);
-
-      // Get code
-      int responseCode = response.getStatusLine().getStatusCode();
-      
-      // Convert body of result
-      BufferedReader rd = new BufferedReader(new InputStreamReader(response.getEntity().getContent()));
-      StringBuffer result = new StringBuffer();
-      String line = "";
-      while ((line = rd.readLine()) != null) {
-        result.append(line);
-      }
-      
-      String title= "";
-
-      // Check result
-      if (responseCode == 200) {
-        // Convert into bean
-        ObjectMapper mapper = new ObjectMapper();
-        BookBean bookBean = null;
-        try {
-          bookBean = mapper.readValue(result.toString(), BookBean.class);
-        } catch (IOException ioe) {
-          ioe.printStackTrace();
-        }
-        
-        title = bookBean.getTitle();
-      }
-      else {
-        System.out.println("Unable to get book's title for id: " + bookId);
-        System.out.println("Error code: " + responseCode);
-        System.out.println("Error content: " + result);
-      }
-
-      return title;
-    } catch (Exception e) {
-      e.printStackTrace();
-      return "";
-    }
+  private Map<Integer, String> findTitles(List<DatabaseUserBook> userBooks) {
+    List<Integer> bookIds = userBooks.stream().map(DatabaseUserBook::getBookId).collect(Collectors.toList());
+    return bookTitleCache.getTitles(bookIds);
   }
 
 }
@@ -0,0 +1,123 @@
+package com.wpff.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.wpff.common.result.FieldSet;
+import com.wpff.core.DatabaseUserBook;
+import com.wpff.core.beans.FullUserBook;
+
+/**
+ * Maps a DatabaseUserBook into a FullUserBook for return to caller.
+ */
+public final class UserBookMapper {
+
+	/**
+	 * Fields of a FullUserBook that may be requested
+	 */
+	static final List<String> FIELDS = Arrays.asList(
+			"userBookId", "userId", "bookId", "rating", "data", "dateAdded", "tags", "title");
+
+	/**
+	 * Fields of the 'summary' view
+	 */
+	static final List<String> SUMMARY = Arrays.asList("userBookId", "bookId", "title", "rating");
+
+	/**
+	 * DatabaseUserBook properties that are always read. The ids are ints in
+	 * FullUserBook, so they are always returned.
+	 */
+	private static final List<String> ID_PROPERTIES = Arrays.asList("userBookId", "user_id", "bookId");
+
+	private UserBookMapper() {
+	}
+
+	/**
+	 * Parse the 'fields' and 'view' query params. The ids are always returned.
+	 *
+	 * @param fields
+	 *            csv of fields. May be null
+	 * @param view
+	 *            'summary' or 'full'. May be null
+	 * @return the requested fields
+	 */
+	static FieldSet parseFields(String fields, String view) {
+		return FieldSet.parse(fields, view, FIELDS, SUMMARY, "userBookId", "userId", "bookId");
+	}
+
+	/**
+	 * Get the DatabaseUserBook properties to read for the requested fields. The
+	 * 'tags' and 'title' are not in the userbook table.
+	 *
+	 * @param fields
+	 *            Requested fields
+	 * @return list of properties, or null to read the whole DatabaseUserBook
+	 */
+	static List<String> properties(FieldSet fields) {
+		if (fields.isAll()) {
+			return null;
+		}
+
+		List<String> properties = new ArrayList<String>(ID_PROPERTIES);
+		for (String field : Arrays.asList("rating", "data", "dateAdded")) {
+			if (fields.contains(field)) {
+				properties.add(field);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Convert a DB book to a FullUserBook bean. The tags and title are not set.
+	 *
+	 * @param dbBook
+	 *            Book to convert
+	 * @return FullUserBook
+	 */
+	public static FullUserBook toFullUserBook(DatabaseUserBook dbBook) {
+		FullUserBook bookToReturn = new FullUserBook();
+
+		bookToReturn.setUserBookId(dbBook.getUserBookId());
+		bookToReturn.setUserId(dbBook.getUserId());
+		bookToReturn.setBookId(dbBook.getBookId());
+		bookToReturn.setRating(dbBook.getRating());
+		bookToReturn.setData(dbBook.getData());
+		bookToReturn.setDateAdded(dbBook.getDateAdded());
+
+		return bookToReturn;
+	}
+
+	/**
+	 * Convert a DB book to a FullUserBook bean with only the requested fields.
+	 * The tags and title are not set.
+	 *
+	 * @param dbBook
+	 *            Book to convert. May only have the properties for those fields
+	 * @param fields
+	 *            Requested fields
+	 * @return FullUserBook
+	 */
+	public static FullUserBook toFullUserBook(DatabaseUserBook dbBook, FieldSet fields) {
+		if (fields.isAll()) {
+			return toFullUserBook(dbBook);
+		}
+
+		FullUserBook bookToReturn = new FullUserBook();
+
+		bookToReturn.setUserBookId(dbBook.getUserBookId());
+		bookToReturn.setUserId(dbBook.getUserId());
+		bookToReturn.setBookId(dbBook.getBookId());
+		if (fields.contains("rating")) {
+			bookToReturn.setRating(dbBook.getRating());
+		}
+		if (fields.contains("data")) {
+			bookToReturn.setData(dbBook.getData());
+		}
+		if (fields.contains("dateAdded")) {
+			bookToReturn.setDateAdded(dbBook.getDateAdded());
+		}
+
+		return bookToReturn;
+	}
+}
@@ -0,0 +1,78 @@
+package com.wpff.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntStringMapTest {
+
+	@Test
+	public void putReplacesValue() {
+		BookTitleCache.IntStringMap map = new BookTitleCache.IntStringMap(16);
+		map.put(7, "Dune");
+		map.put(7, "Dune Messiah");
+		assertEquals("Dune Messiah", map.get(7));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void keysBelowOneAreIgnored() {
+		BookTitleCache.IntStringMap map = new BookTitleCache.IntStringMap(16);
+		map.put(0, "zero");
+		map.put(-1, "negative");
+		assertEquals(0, map.size());
+		assertNull(map.get(-1));
+	}
+
+	@Test
+	public void removeKeepsTheOtherKeys() {
+		BookTitleCache.IntStringMap map = new BookTitleCache.IntStringMap(16);
+		for (int key = 1; key <= 1000; key++) {
+			map.put(key, "title " + key);
+		}
+		for (int key = 2; key <= 1000; key += 2) {
+			map.remove(key);
+		}
+		map.remove(2000);
+
+		assertEquals(500, map.size());
+		for (int key = 1; key <= 1000; key++) {
+			if (key % 2 == 0) {
+				assertNull(map.get(key));
+			}
+			else {
+				assertEquals("title " + key, map.get(key));
+			}
+		}
+	}
+
+	@Test
+	public void behavesAsHashMap() {
+		// Few keys in a small map, so probe chains collide and wrap around
+		BookTitleCache.IntStringMap map = new BookTitleCache.IntStringMap(16);
+		Map<Integer, String> expected = new HashMap<Integer, String>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 20000; i++) {
+			int key = 1 + random.nextInt(40);
+			if (random.nextInt(3) == 0) {
+				map.remove(key);
+				expected.remove(key);
+			}
+			else {
+				map.put(key, "title " + i);
+				expected.put(key, "title " + i);
+			}
+
+			assertEquals(expected.size(), map.size());
+			for (int k = 1; k <= 40; k++) {
+				assertEquals(expected.get(k), map.get(k));
+			}
+		}
+	}
+}
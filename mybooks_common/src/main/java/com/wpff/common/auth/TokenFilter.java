@@ -3,6 +3,7 @@ package com.wpff.common.auth;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.List;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -21,7 +22,7 @@ import redis.clients.jedis.JedisPool;
  * annotated with TokenRequired (com.wpff.filter.TokenRequired).
  *
  * If a token that matches key/value in our database, we update the security
- * context with a UserPrincipal that has the name of the User.
+ * context with a TokenPrincipal that has the name and id of the User.
  *
  */
 public class TokenFilter implements ContainerRequestFilter {
@@ -77,8 +78,9 @@ public class TokenFilter implements ContainerRequestFilter {
     Jedis jedis = null;
     try {
       jedis = this.jedisPool.getResource();
-      final String username = jedis.hget(redisHashName, "name");
-      final String group = jedis.hget(redisHashName, "group");
+      List<String> values = jedis.hmget(redisHashName, "name", "group", "userId");
+      final String username = values.get(0);
+      final String group = values.get(1);
 
       if ((username == null) || (username.isEmpty())) {
         throw new WebApplicationException(
@@ -86,17 +88,13 @@ public class TokenFilter implements ContainerRequestFilter {
             Response.Status.UNAUTHORIZED);
       }
 
-      // Override the security context by giving it a new UserPrincipal
-      // that will container the username we got from our DB
+      // Override the security context by giving it a new TokenPrincipal
+      // that will container the username and id we got from our DB
+      final Principal principal = new TokenPrincipal(username, parseUserId(values.get(2)));
       requestContext.setSecurityContext(new SecurityContext() {
         @Override
         public Principal getUserPrincipal() {
-          return new Principal() {
-            @Override
-            public String getName() {
-              return username;
-            }
-          };
+          return principal;
         }
 
         @Override
@@ -125,4 +123,22 @@ public class TokenFilter implements ContainerRequestFilter {
     }
   }
 
+  /**
+   * Parse the user id stored with a token
+   *
+   * @param userId
+   *          Stored user id, null for tokens created before it was stored
+   * @return user id, or null if missing or invalid
+   */
+  private static Integer parseUserId(String userId) {
+    if (userId == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(userId);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
 }
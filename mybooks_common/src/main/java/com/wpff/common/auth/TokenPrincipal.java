@@ -0,0 +1,51 @@
+package com.wpff.common.auth;
+
+import java.security.Principal;
+
+/**
+ * Principal of an authenticated request, set by the TokenFilter. Carries the
+ * id of the user along with the name, so a resource can check that a caller
+ * owns a resource without looking the user up in the database.
+ */
+public class TokenPrincipal implements Principal {
+
+  /**
+   * Name of user
+   */
+  private final String name;
+
+  /**
+   * ID of user. Null for tokens created before the id was stored with them.
+   */
+  private final Integer userId;
+
+  /**
+   * Create new principal
+   *
+   * @param name
+   *          Name of user
+   * @param userId
+   *          ID of user, or null if unknown
+   */
+  public TokenPrincipal(String name, Integer userId) {
+    this.name = name;
+    this.userId = userId;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return ID of user, or null if the token doesn't have it
+   */
+  public Integer getUserId() {
+    return userId;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenPrincipal [name=" + name + ", userId=" + userId + "]";
+  }
+}
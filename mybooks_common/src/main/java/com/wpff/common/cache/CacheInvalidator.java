@@ -0,0 +1,150 @@
+package com.wpff.common.cache;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * Publishes and subscribes to cache invalidation messages over redis.
+ *
+ * A webservice that owns some data (e.g. 'author') publishes the key of an
+ * entry whenever it changes. Webservices that cache that data (e.g. 'book')
+ * subscribe to the channel and drop the entry from their local cache.
+ *
+ * The redis instance is the same one used by the TokenFilter.
+ */
+public class CacheInvalidator {
+
+  /**
+   * Channel for author changes. Message is the author id.
+   */
+  public static final String AUTHOR_CHANNEL = "invalidate:author";
+
+  /**
+   * Channel for book creates, updates and deletes. Message is the book id, or
+   * comma separated book ids for books created in bulk.
+   */
+  public static final String BOOK_CHANNEL = "invalidate:book";
+
+  /**
+   * Time to wait before resubscribing after losing the redis connection, in
+   * milliseconds.
+   */
+  private static final long RESUBSCRIBE_DELAY = 5000;
+
+  /**
+   * Listener for invalidation messages.
+   */
+  public interface Listener {
+    /**
+     * Invalidate a single entry
+     *
+     * @param key
+     *          Key of entry that changed
+     */
+    void invalidate(String key);
+
+    /**
+     * Invalidate all entries. Called each time the subscription is
+     * (re)established, as messages may have been missed while disconnected.
+     */
+    void invalidateAll();
+  }
+
+  /**
+   * Publish an invalidation message.
+   *
+   * @param jedisPool
+   *          Jedis pool
+   * @param channel
+   *          Channel to publish to
+   * @param key
+   *          Key of entry that changed
+   */
+  public static void publish(JedisPool jedisPool, String channel, String key) {
+    Jedis jedis = null;
+    try {
+      jedis = jedisPool.getResource();
+      jedis.publish(channel, key);
+    } catch (Exception e) {
+      // Subscribers still expire their entries via TTL
+      System.out.println("Unable to publish invalidation of '" + key + "' on " + channel + ": " + e.getMessage());
+    } finally {
+      if (jedis != null) {
+        jedisPool.returnResource(jedis);
+      }
+    }
+  }
+
+  /**
+   * Subscribe to a channel. The subscription runs on its own daemon thread and
+   * is re-established if the redis connection is lost.
+   *
+   * @param jedisPool
+   *          Jedis pool. One connection is held for the subscription.
+   * @param channel
+   *          Channel to subscribe to
+   * @param listener
+   *          Listener notified of each message
+   * @return the subscribing thread
+   */
+  public static Thread subscribe(final JedisPool jedisPool, final String channel, final Listener listener) {
+    final JedisPubSub pubSub = new JedisPubSub() {
+      @Override
+      public void onMessage(String messageChannel, String message) {
+        listener.invalidate(message);
+      }
+
+      @Override
+      public void onSubscribe(String subscribedChannel, int subscribedChannels) {
+        listener.invalidateAll();
+      }
+
+      @Override
+      public void onPMessage(String pattern, String messageChannel, String message) {
+      }
+
+      @Override
+      public void onUnsubscribe(String unsubscribedChannel, int subscribedChannels) {
+      }
+
+      @Override
+      public void onPUnsubscribe(String pattern, int subscribedChannels) {
+      }
+
+      @Override
+      public void onPSubscribe(String pattern, int subscribedChannels) {
+      }
+    };
+
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+          Jedis jedis = null;
+          try {
+            jedis = jedisPool.getResource();
+            // Blocks until unsubscribed or the connection fails
+            jedis.subscribe(pubSub, channel);
+          } catch (Exception e) {
+            System.out.println("Lost subscription to " + channel + ": " + e.getMessage());
+          } finally {
+            if (jedis != null) {
+              jedisPool.returnBrokenResource(jedis);
+            }
+          }
+
+          try {
+            Thread.sleep(RESUBSCRIBE_DELAY);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }, "subscriber-" + channel);
+    thread.setDaemon(true);
+    thread.start();
+
+    return thread;
+  }
+}
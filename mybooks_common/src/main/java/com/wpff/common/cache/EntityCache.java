@@ -0,0 +1,168 @@
+package com.wpff.common.cache;
+
+import java.util.Map;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+
+/**
+ * Hibernate second-level and query cache, kept in an in-process Ehcache.
+ *
+ * The regions are created here, sized from the webservice's configuration,
+ * before hibernate starts. Hibernate's SingletonEhCacheRegionFactory then
+ * uses this CacheManager instead of reading an ehcache.xml.
+ *
+ * The hits, misses, hit ratio, size and evictions of each region are reported
+ * through the metrics registry.
+ */
+public class EntityCache {
+
+  /**
+   * Region of the query cache
+   */
+  public static final String QUERY_REGION = "org.hibernate.cache.internal.StandardQueryCache";
+
+  /**
+   * Region with the last update time of each table. Cached queries of a table
+   * that changed later are not used. Entries never expire.
+   */
+  public static final String TIMESTAMPS_REGION = "org.hibernate.cache.spi.UpdateTimestampsCache";
+
+  /**
+   * Create the cache regions and enable the cache in hibernate. Must be called
+   * before the hibernate session factory is built.
+   *
+   * @param hibernateProperties
+   *          Properties of the hibernate configuration, updated to enable the
+   *          cache
+   * @param maximumSize
+   *          Maximum number of entities in each entity region
+   * @param timeToLiveSeconds
+   *          Time an entity stays in its region
+   * @param queryCacheMaximumSize
+   *          Maximum number of query results in the query cache
+   * @param entityRegions
+   *          Region of each cached entity, which is its class name
+   * @return the CacheManager
+   */
+  public static CacheManager start(Map<String, String> hibernateProperties,
+                                   long maximumSize,
+                                   long timeToLiveSeconds,
+                                   long queryCacheMaximumSize,
+                                   String... entityRegions) {
+    Configuration config = new Configuration();
+    config.setDefaultCacheConfiguration(region("default", maximumSize, timeToLiveSeconds));
+
+    for (String entityRegion : entityRegions) {
+      config.addCache(region(entityRegion, maximumSize, timeToLiveSeconds));
+    }
+    config.addCache(region(QUERY_REGION, queryCacheMaximumSize, timeToLiveSeconds));
+    config.addCache(new CacheConfiguration(TIMESTAMPS_REGION, 0).eternal(true));
+
+    CacheManager cacheManager = CacheManager.create(config);
+    enable(hibernateProperties);
+    return cacheManager;
+  }
+
+  /**
+   * Turn the cache off in another hibernate configuration of the webservice,
+   * e.g. the read replica's. Its session factory would otherwise share the
+   * regions created by start, and the replica lags the primary: an entity or
+   * query result read there could be older than the update that just evicted
+   * it, and would be served from the cache until it expires.
+   *
+   * @param hibernateProperties
+   *          Properties of the hibernate configuration, updated to disable the
+   *          cache
+   */
+  public static void disable(Map<String, String> hibernateProperties) {
+    hibernateProperties.put("hibernate.cache.use_second_level_cache", "false");
+    hibernateProperties.put("hibernate.cache.use_query_cache", "false");
+  }
+
+  /**
+   * Enable the cache in a hibernate configuration, with the regions of start
+   *
+   * @param hibernateProperties
+   *          Properties of the hibernate configuration, updated to enable the
+   *          cache
+   */
+  private static void enable(Map<String, String> hibernateProperties) {
+    hibernateProperties.put("hibernate.cache.use_second_level_cache", "true");
+    hibernateProperties.put("hibernate.cache.use_query_cache", "true");
+    hibernateProperties.put("hibernate.cache.region.factory_class",
+        "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory");
+  }
+
+  /**
+   * Register the metrics of each region, named
+   * 'entityCache.[region].[metric]'. The region is the last part of its name,
+   * e.g. 'Book' or 'StandardQueryCache'.
+   *
+   * @param metrics
+   *          Metric registry
+   * @param cacheManager
+   *          CacheManager from start
+   */
+  public static void registerMetrics(MetricRegistry metrics, CacheManager cacheManager) {
+    for (String region : cacheManager.getCacheNames()) {
+      Cache cache = cacheManager.getCache(region);
+      String name = region.substring(region.lastIndexOf('.') + 1);
+
+      metrics.register(MetricRegistry.name("entityCache", name, "hits"), new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return cache.getStatistics().cacheHitCount();
+        }
+      });
+      metrics.register(MetricRegistry.name("entityCache", name, "misses"), new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return cache.getStatistics().cacheMissCount();
+        }
+      });
+      metrics.register(MetricRegistry.name("entityCache", name, "hitRatio"), new Gauge<Double>() {
+        @Override
+        public Double getValue() {
+          return cache.getStatistics().cacheHitRatio();
+        }
+      });
+      metrics.register(MetricRegistry.name("entityCache", name, "size"), new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return cache.getStatistics().getSize();
+        }
+      });
+      metrics.register(MetricRegistry.name("entityCache", name, "evictions"), new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return cache.getStatistics().cacheEvictedCount();
+        }
+      });
+    }
+  }
+
+  /**
+   * Create the configuration of a region that evicts the least recently used
+   * entries
+   *
+   * @param name
+   *          Name of region
+   * @param maximumSize
+   *          Maximum number of entries
+   * @param timeToLiveSeconds
+   *          Time an entry stays in the region
+   * @return the configuration
+   */
+  private static CacheConfiguration region(String name, long maximumSize, long timeToLiveSeconds) {
+    return new CacheConfiguration(name, (int) maximumSize)
+        .timeToLiveSeconds(timeToLiveSeconds)
+        .memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU);
+  }
+}
@@ -0,0 +1,91 @@
+package com.wpff.common.cache;
+
+import java.util.List;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Version counters of whole tables, kept in redis.
+ *
+ * The webservice that owns a table increments its counter on every create,
+ * update and delete. A list endpoint builds its ETag from the counters of the
+ * tables it reads, so an unchanged page can be answered with 304 without
+ * touching the database. Being in redis, the counters are shared by every
+ * instance of a webservice.
+ *
+ * The redis instance is the same one used by the TokenFilter.
+ */
+public class TableVersion {
+
+  /**
+   * Counter for the book table
+   */
+  public static final String BOOK = "version:book";
+
+  /**
+   * Counter for the author table
+   */
+  public static final String AUTHOR = "version:author";
+
+  /**
+   * Counter for the tag table
+   */
+  public static final String TAG = "version:tag";
+
+  /**
+   * Increment the counter of a table.
+   *
+   * @param jedisPool
+   *          Jedis pool
+   * @param table
+   *          Counter to increment, e.g. BOOK
+   */
+  public static void increment(JedisPool jedisPool, String table) {
+    Jedis jedis = null;
+    try {
+      jedis = jedisPool.getResource();
+      jedis.incr(table);
+    } catch (Exception e) {
+      System.out.println("Unable to increment " + table + ": " + e.getMessage());
+    } finally {
+      if (jedis != null) {
+        jedisPool.returnResource(jedis);
+      }
+    }
+  }
+
+  /**
+   * Get the counters of one or more tables, joined with '.'. A table that was
+   * never changed has counter 0.
+   *
+   * @param jedisPool
+   *          Jedis pool
+   * @param tables
+   *          Counters to get, e.g. BOOK
+   * @return joined counters, or null if redis is unavailable
+   */
+  public static String get(JedisPool jedisPool, String... tables) {
+    Jedis jedis = null;
+    try {
+      jedis = jedisPool.getResource();
+      List<String> values = jedis.mget(tables);
+
+      StringBuilder versions = new StringBuilder();
+      for (String value : values) {
+        if (versions.length() > 0) {
+          versions.append('.');
+        }
+        versions.append(value == null ? "0" : value);
+      }
+      return versions.toString();
+    } catch (Exception e) {
+      System.out.println("Unable to get table versions: " + e.getMessage());
+      return null;
+    } finally {
+      if (jedis != null) {
+        jedisPool.returnResource(jedis);
+      }
+    }
+  }
+}
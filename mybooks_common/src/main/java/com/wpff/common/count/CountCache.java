@@ -0,0 +1,216 @@
+package com.wpff.common.count;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * In memory cache of the total counts reported by list endpoints, so a page
+ * does not run a 'SELECT COUNT(*)' each time.
+ *
+ * A count is cached per table and filter. The filter is a string built by
+ * the caller from its query params, or ALL for the whole table.
+ *
+ * - A create or delete adjusts the whole-table count and the counts of the
+ * filters known to contain the row. Other filtered counts of that table are
+ * dropped, as the row may or may not match them.
+ * - An update drops the filtered counts of its table.
+ * - Each count is recomputed on its first read after the refresh interval.
+ * This covers changes made by other instances of the webservice.
+ *
+ * The least recently read counts are dropped beyond the maximum size.
+ */
+public class CountCache {
+
+  /**
+   * Filter for the count of a whole table
+   */
+  public static final String ALL = "";
+
+  /**
+   * Separates the table and filter in a key
+   */
+  private static final char SEPARATOR = '\u0000';
+
+  private final long refreshMillis;
+
+  /**
+   * Table and filter to count, least recently read first
+   */
+  private final LinkedHashMap<String, Count> counts;
+
+  /**
+   * Number of changes to each table. A count computed while its table
+   * changed is not cached.
+   */
+  private final Map<String, Long> changes = new HashMap<String, Long>();
+
+  private long hits = 0;
+
+  private long misses = 0;
+
+  /**
+   * Create cache
+   *
+   * @param refreshInterval
+   *          Time after which a count is recomputed
+   * @param unit
+   *          Unit of refreshInterval
+   * @param maximumSize
+   *          Maximum number of counts held
+   */
+  public CountCache(long refreshInterval, TimeUnit unit, final int maximumSize) {
+    this.refreshMillis = unit.toMillis(refreshInterval);
+    this.counts = new LinkedHashMap<String, Count>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Count> eldest) {
+        return size() > maximumSize;
+      }
+    };
+  }
+
+  /**
+   * Get a count, computing it if it is not cached or is due a refresh. The
+   * count is computed outside of the cache's lock.
+   *
+   * @param table
+   *          Table being counted, e.g. 'book'
+   * @param filter
+   *          Filter of the count, or ALL
+   * @param count
+   *          Computes the count, e.g. a DAO's 'getNumberOf' method
+   * @return the count
+   */
+  public long get(String table, String filter, LongSupplier count) {
+    String key = key(table, filter);
+    long now = System.currentTimeMillis();
+
+    long changesBefore;
+    synchronized (this) {
+      Count cached = counts.get(key);
+      if ((cached != null) && (now - cached.computedAt < refreshMillis)) {
+        hits++;
+        return cached.value;
+      }
+      misses++;
+      changesBefore = changes(table);
+    }
+
+    long value = count.getAsLong();
+
+    synchronized (this) {
+      if (changes(table) == changesBefore) {
+        counts.put(key, new Count(value, now));
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Record a change to a table. The whole-table count and the incoming
+   * filters' counts are adjusted by delta, the table's other filtered counts
+   * are dropped.
+   *
+   * @param table
+   *          Table that changed
+   * @param delta
+   *          1 for a created row, -1 for a deleted row, 0 for an update
+   * @param filters
+   *          Filters known to match the created or deleted row, e.g. the
+   *          owner of a user book
+   */
+  public synchronized void adjust(String table, long delta, String... filters) {
+    changes.put(table, changes(table) + 1);
+
+    Set<String> adjusted = new HashSet<String>();
+    adjusted.add(key(table, ALL));
+    for (String filter : filters) {
+      adjusted.add(key(table, filter));
+    }
+
+    String prefix = table + SEPARATOR;
+    Iterator<Map.Entry<String, Count>> iterator = counts.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Count> entry = iterator.next();
+      if (!entry.getKey().startsWith(prefix)) {
+        continue;
+      }
+
+      Count count = entry.getValue();
+      if (adjusted.contains(entry.getKey()) && (count.value + delta >= 0)) {
+        count.value += delta;
+      } else {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Register the hits, misses and size of the cache, named
+   * 'countCache.[metric]'.
+   *
+   * @param metrics
+   *          Metric registry
+   */
+  public void registerMetrics(MetricRegistry metrics) {
+    metrics.register(MetricRegistry.name("countCache", "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        synchronized (CountCache.this) {
+          return hits;
+        }
+      }
+    });
+    metrics.register(MetricRegistry.name("countCache", "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        synchronized (CountCache.this) {
+          return misses;
+        }
+      }
+    });
+    metrics.register(MetricRegistry.name("countCache", "size"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        synchronized (CountCache.this) {
+          return counts.size();
+        }
+      }
+    });
+  }
+
+  /************************************************************************/
+  /** Helper methods **/
+  /************************************************************************/
+
+  private long changes(String table) {
+    Long count = changes.get(table);
+    return (count == null) ? 0 : count;
+  }
+
+  private static String key(String table, String filter) {
+    return table + SEPARATOR + ((filter == null) ? ALL : filter);
+  }
+
+  /**
+   * A cached count and when it was computed
+   */
+  private static class Count {
+    long value;
+
+    final long computedAt;
+
+    Count(long value, long computedAt) {
+      this.value = value;
+      this.computedAt = computedAt;
+    }
+  }
+}
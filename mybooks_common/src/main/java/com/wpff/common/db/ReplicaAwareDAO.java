@@ -0,0 +1,107 @@
+package com.wpff.common.db;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import io.dropwizard.hibernate.AbstractDAO;
+
+/**
+ * DAO that reads through the replica's session when the current unit of work
+ * is on the replica, and otherwise uses the primary's session.
+ *
+ * A unit of work on the primary always wins, so writes and reads that follow
+ * a write in the same unit of work see the primary.
+ *
+ * @param <E>
+ *          Entity type
+ */
+public class ReplicaAwareDAO<E> extends AbstractDAO<E> {
+
+  private final SessionFactory primaryFactory;
+
+  private final SessionFactory replicaFactory;
+
+  /**
+   * @param primaryFactory
+   *          Session factory of the primary database
+   * @param replicaFactory
+   *          Session factory of the read replica, from ReplicaHibernateBundle
+   */
+  public ReplicaAwareDAO(SessionFactory primaryFactory, SessionFactory replicaFactory) {
+    super(primaryFactory);
+    this.primaryFactory = primaryFactory;
+    this.replicaFactory = replicaFactory;
+  }
+
+  /* (non-Javadoc)
+   * @see io.dropwizard.hibernate.AbstractDAO#currentSession()
+   */
+  @Override
+  protected Session currentSession() {
+    if (!ManagedSessionContext.hasBind(primaryFactory) && ManagedSessionContext.hasBind(replicaFactory)) {
+      return replicaFactory.getCurrentSession();
+    }
+    return super.currentSession();
+  }
+
+  /**
+   * @return session factory of the read replica, e.g. for stateless sessions
+   *         that read a whole table
+   */
+  protected SessionFactory replicaSessionFactory() {
+    return replicaFactory;
+  }
+
+  /**
+   * @return session factory of the primary database, e.g. for stateless
+   *         sessions whose reads must not lag, even in a unit of work on the
+   *         replica
+   */
+  protected SessionFactory primarySessionFactory() {
+    return primaryFactory;
+  }
+
+  /**
+   * @return true if a read replica is configured, so reads on the replica may
+   *         lag behind the primary. Without one the replica's session factory
+   *         is the primary's, see ReplicaHibernateBundle
+   */
+  public boolean hasReplica() {
+    return replicaFactory != primaryFactory;
+  }
+
+  /**
+   * Run an action once the current transaction has committed, e.g. to tell
+   * other webservices about a change only when they are able to read it. The
+   * action is not run if the transaction rolls back, and is run at once if
+   * there is no active transaction.
+   *
+   * @param action
+   *          Action to run
+   */
+  public void afterCommit(final Runnable action) {
+    Transaction transaction = currentSession().getTransaction();
+    if (!transaction.isActive()) {
+      action.run();
+      return;
+    }
+
+    transaction.registerSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        if (status == Status.STATUS_COMMITTED) {
+          action.run();
+        }
+      }
+    });
+  }
+}
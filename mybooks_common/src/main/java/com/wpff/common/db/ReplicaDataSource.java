@@ -0,0 +1,175 @@
+package com.wpff.common.db;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Gauge;
+
+import io.dropwizard.db.ManagedDataSource;
+
+/**
+ * Data source for read only sessions. Hands out connections to the replica
+ * unless its last lag check found it lagging, then to the primary.
+ *
+ * The check runs on its own thread, so a request only reads a flag. Hibernate
+ * takes a connection when a session starts its transaction, so a session
+ * stays on the database it started on.
+ */
+class ReplicaDataSource implements ManagedDataSource {
+
+  private final String name;
+
+  private final ManagedDataSource replica;
+
+  private final ManagedDataSource primary;
+
+  private final String lagQuery;
+
+  private final String lagColumn;
+
+  private final long maximumLagSeconds;
+
+  private final long checkIntervalMillis;
+
+  private volatile boolean lagging = false;
+
+  private ScheduledExecutorService checker;
+
+  ReplicaDataSource(String name,
+                    ManagedDataSource replica,
+                    ManagedDataSource primary,
+                    String lagQuery,
+                    String lagColumn,
+                    long maximumLagSeconds,
+                    long checkIntervalMillis) {
+    this.name = name;
+    this.replica = replica;
+    this.primary = primary;
+    this.lagQuery = lagQuery;
+    this.lagColumn = lagColumn;
+    this.maximumLagSeconds = maximumLagSeconds;
+    this.checkIntervalMillis = checkIntervalMillis;
+  }
+
+  /**
+   * @return gauge that is 1 while reads go to the primary
+   */
+  Gauge<Integer> laggingGauge() {
+    return () -> lagging ? 1 : 0;
+  }
+
+  /**
+   * Check the replica's lag and route to the primary while it is above the
+   * maximum, or unknown.
+   */
+  private void checkLag() {
+    Long lag = null;
+    try (Connection connection = replica.getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet results = statement.executeQuery(lagQuery)) {
+      if (results.next()) {
+        long value = results.getLong(lagColumn);
+        lag = results.wasNull() ? null : value;
+      }
+    } catch (SQLException e) {
+      System.out.println("Unable to read lag of " + name + ": " + e.getMessage());
+    }
+
+    boolean nowLagging = (lag == null) || (lag > maximumLagSeconds);
+    if (nowLagging != lagging) {
+      System.out.println(nowLagging
+          ? "Replica " + name + " is lagging (" + lag + "s), reading from the primary."
+          : "Replica " + name + " caught up (" + lag + "s), reading from the replica.");
+    }
+    lagging = nowLagging;
+  }
+
+  private ManagedDataSource current() {
+    return lagging ? primary : replica;
+  }
+
+  /************************************************************************/
+  /** Managed **/
+  /************************************************************************/
+
+  @Override
+  public void start() throws Exception {
+    replica.start();
+    primary.start();
+
+    checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, name + "-lag-check");
+      thread.setDaemon(true);
+      return thread;
+    });
+    checker.scheduleWithFixedDelay(this::checkLag, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    if (checker != null) {
+      checker.shutdownNow();
+    }
+    replica.stop();
+    primary.stop();
+  }
+
+  /************************************************************************/
+  /** DataSource **/
+  /************************************************************************/
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return current().getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return current().getConnection(username, password);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return replica.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    replica.setLogWriter(out);
+    primary.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    replica.setLoginTimeout(seconds);
+    primary.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return replica.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return replica.getParentLogger();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    return current().unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return current().isWrapperFor(iface);
+  }
+}
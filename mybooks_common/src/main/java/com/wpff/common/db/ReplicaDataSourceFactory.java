@@ -0,0 +1,105 @@
+package com.wpff.common.db;
+
+import javax.validation.constraints.NotNull;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.util.Duration;
+
+/**
+ * Configuration of a read replica, the 'readDatabase' block of a webservice's
+ * configuration. Has the same settings as 'database' plus the replica's lag
+ * settings:
+ *
+ * - fallbackToPrimary: Use the primary while the replica lags. Default true.
+ * - maximumLag: Lag at which the replica stops being used. Default 5 seconds.
+ * - lagCheckInterval: Time between lag checks. Default 1 second.
+ * - lagQuery: Query on the replica that returns its lag in seconds. Default
+ * 'SHOW SLAVE STATUS'.
+ * - lagColumn: Column of lagQuery with the lag. Default
+ * 'Seconds_Behind_Master'.
+ *
+ * A replica whose lag is unknown (e.g. replication stopped or the query
+ * failed) is treated as lagging.
+ */
+public class ReplicaDataSourceFactory extends DataSourceFactory {
+
+  @JsonProperty
+  private boolean fallbackToPrimary = true;
+
+  @NotNull
+  @JsonProperty
+  private Duration maximumLag = Duration.seconds(5);
+
+  @NotNull
+  @JsonProperty
+  private Duration lagCheckInterval = Duration.seconds(1);
+
+  @NotNull
+  @JsonProperty
+  private String lagQuery = "SHOW SLAVE STATUS";
+
+  @NotNull
+  @JsonProperty
+  private String lagColumn = "Seconds_Behind_Master";
+
+  /**
+   * Primary database to fall back to. Set by the webservice's configuration
+   */
+  @JsonIgnore
+  private DataSourceFactory primary;
+
+  public boolean isFallbackToPrimary() {
+    return fallbackToPrimary;
+  }
+
+  public Duration getMaximumLag() {
+    return maximumLag;
+  }
+
+  public Duration getLagCheckInterval() {
+    return lagCheckInterval;
+  }
+
+  public String getLagQuery() {
+    return lagQuery;
+  }
+
+  public String getLagColumn() {
+    return lagColumn;
+  }
+
+  @JsonIgnore
+  public void setPrimary(DataSourceFactory primary) {
+    this.primary = primary;
+  }
+
+  /**
+   * Build the replica's pool. With fallbackToPrimary the pool is wrapped so a
+   * lagging replica hands out connections to the primary instead.
+   *
+   * @see io.dropwizard.db.DataSourceFactory#build(com.codahale.metrics.MetricRegistry, java.lang.String)
+   */
+  @Override
+  public ManagedDataSource build(MetricRegistry metricRegistry, String name) {
+    ManagedDataSource replica = super.build(metricRegistry, name);
+    if (!fallbackToPrimary || (primary == null)) {
+      return replica;
+    }
+
+    ReplicaDataSource dataSource = new ReplicaDataSource(
+        name,
+        replica,
+        primary.build(metricRegistry, name + "-primary"),
+        lagQuery,
+        lagColumn,
+        maximumLag.toSeconds(),
+        lagCheckInterval.toMilliseconds());
+    metricRegistry.register(MetricRegistry.name(name, "lagging"), dataSource.laggingGauge());
+    return dataSource;
+  }
+}
@@ -0,0 +1,89 @@
+package com.wpff.common.db;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.wpff.common.cache.EntityCache;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.setup.Environment;
+
+/**
+ * Hibernate bundle for the read replica of a webservice's database.
+ *
+ * Its session factory is registered under NAME. Read only methods use it with
+ * '@UnitOfWork(value = ReplicaHibernateBundle.NAME, readOnly = true)', and
+ * their DAOs extend ReplicaAwareDAO to read through its session.
+ *
+ * When the webservice has no replica, i.e. getDataSourceFactory doesn't
+ * return a ReplicaDataSourceFactory, the primary bundle's session factory is
+ * registered under NAME as well, so no second pool is built. Otherwise the
+ * replica gets its own session factory, without the second-level and query
+ * cache, see EntityCache.disable. The primary bundle must be added first.
+ *
+ * @param <T>
+ *          Configuration of the webservice
+ */
+public abstract class ReplicaHibernateBundle<T extends Configuration> extends HibernateBundle<T> {
+
+  /**
+   * Name of the replica's session factory
+   */
+  public static final String NAME = "replica";
+
+  /**
+   * @param primary
+   *          Bundle of the primary database
+   * @param entity
+   *          Entity
+   * @param entities
+   *          More entities
+   */
+  protected ReplicaHibernateBundle(HibernateBundle<T> primary, Class<?> entity, Class<?>... entities) {
+    super(ImmutableList.<Class<?>>builder().add(entity).add(entities).build(),
+          new ReplicaSessionFactoryFactory(primary));
+  }
+
+  /* (non-Javadoc)
+   * @see io.dropwizard.hibernate.HibernateBundle#name()
+   */
+  @Override
+  protected String name() {
+    return NAME;
+  }
+
+  /**
+   * Builds the replica's session factory, or shares the primary's
+   */
+  private static class ReplicaSessionFactoryFactory extends SessionFactoryFactory {
+
+    private final HibernateBundle<?> primary;
+
+    ReplicaSessionFactoryFactory(HibernateBundle<?> primary) {
+      this.primary = primary;
+    }
+
+    @Override
+    public SessionFactory build(HibernateBundle<?> bundle,
+                                Environment environment,
+                                PooledDataSourceFactory dbConfig,
+                                List<Class<?>> entities,
+                                String name) {
+      if (!(dbConfig instanceof ReplicaDataSourceFactory)) {
+        SessionFactory shared = primary.getSessionFactory();
+        if (shared == null) {
+          throw new IllegalStateException("The primary hibernate bundle must be added before '" + name + "'.");
+        }
+        return shared;
+      }
+
+      EntityCache.disable(dbConfig.getProperties());
+      return super.build(bundle, environment, dbConfig, entities, name);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.wpff.common.http;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * Helpers for conditional requests with ETags.
+ *
+ * A GET evaluates the request's If-None-Match against the ETag of the
+ * resource before building the result, so an unchanged resource costs no
+ * conversion and no calls to other webservices. A PUT evaluates If-Match, so a
+ * client only overwrites the version it has seen.
+ *
+ * ETags are strong and built from the version of the entity, or the version
+ * counters of the tables (see TableVersion) for a list.
+ */
+public class Conditional {
+
+  /**
+   * Cache-Control sent with each ETag. Responses are per user and have to be
+   * revalidated each time, which is answered with 304 when unchanged.
+   */
+  private static final CacheControl CACHE_CONTROL = new CacheControl();
+  static {
+    CACHE_CONTROL.setPrivate(true);
+    CACHE_CONTROL.setNoCache(true);
+    CACHE_CONTROL.setNoTransform(false);
+  }
+
+  /**
+   * Create a strong ETag from its parts, e.g. ("book", 42, 3)
+   *
+   * @param parts
+   *          Kind of resource, ids and versions
+   * @return the ETag
+   */
+  public static EntityTag tag(Object... parts) {
+    StringBuilder value = new StringBuilder();
+    for (Object part : parts) {
+      if (value.length() > 0) {
+        value.append('-');
+      }
+      value.append(part);
+    }
+    return new EntityTag(value.toString());
+  }
+
+  /**
+   * Evaluate If-None-Match for a GET.
+   *
+   * @param request
+   *          Incoming request
+   * @param tag
+   *          Current ETag of the resource. May be null, when no ETag is known
+   * @return 304 response if the client has the current version, null if the
+   *         resource has to be returned
+   */
+  public static Response notModified(Request request, EntityTag tag) {
+    if (tag == null) {
+      return null;
+    }
+
+    Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+    if (builder == null) {
+      return null;
+    }
+    return builder.cacheControl(CACHE_CONTROL).build();
+  }
+
+  /**
+   * Evaluate If-Match for a PUT. Throws 412 if the client does not have the
+   * current version. A request without If-Match is allowed.
+   *
+   * @param request
+   *          Incoming request
+   * @param tag
+   *          Current ETag of the resource. May be null, when nothing is checked
+   */
+  public static void verifyMatch(Request request, EntityTag tag) throws WebApplicationException {
+    if (tag == null) {
+      return;
+    }
+
+    Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+    if (builder != null) {
+      throw new WebApplicationException(builder.build());
+    }
+  }
+
+  /**
+   * Evaluate If-Match for a PUT against the ETag of the entity alone. The
+   * ETag returned by a GET may add the versions of other tables to the
+   * entity's parts, e.g. ("book", 42, 3, authorVersion). Those trailing parts
+   * are not compared, so a change to another table does not fail the PUT.
+   * Throws 412 if the client does not have the current version. A request
+   * without If-Match is allowed.
+   *
+   * @param ifMatch
+   *          If-Match header of the request. May be null
+   * @param tag
+   *          Current ETag of the entity, from its id and version
+   */
+  public static void verifyMatch(String ifMatch, EntityTag tag) throws WebApplicationException {
+    if ((ifMatch == null) || ifMatch.trim().isEmpty()) {
+      return;
+    }
+
+    for (String value : ifMatch.split(",")) {
+      value = value.trim();
+      if (value.equals("*")) {
+        return;
+      }
+      // Only strong tags match, so a weak 'W/' tag is never equal
+      if ((value.length() >= 2) && value.startsWith("\"") && value.endsWith("\"")) {
+        String opaque = value.substring(1, value.length() - 1);
+        if (opaque.equals(tag.getValue()) || opaque.startsWith(tag.getValue() + "-")) {
+          return;
+        }
+      }
+    }
+    throw new WebApplicationException(Response.Status.PRECONDITION_FAILED);
+  }
+
+  /**
+   * Create the 412 thrown when an entity was changed by another request
+   * between reading and writing it, i.e. its version no longer matches.
+   *
+   * @param message
+   *          Message for the caller
+   * @return exception to throw
+   */
+  public static WebApplicationException preconditionFailed(String message) {
+    return new WebApplicationException(message, Response.Status.PRECONDITION_FAILED);
+  }
+
+  /**
+   * Create a 200 response with the ETag and Cache-Control headers.
+   *
+   * @param entity
+   *          Entity to return
+   * @param tag
+   *          ETag of entity. May be null, when no headers are added
+   * @return response
+   */
+  public static Response ok(Object entity, EntityTag tag) {
+    Response.ResponseBuilder builder = Response.ok(entity);
+    if (tag != null) {
+      builder.tag(tag).cacheControl(CACHE_CONTROL);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,229 @@
+package com.wpff.common.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Client used by the webservices to call each other, e.g. 'book' calling
+ * 'author' for an author's name.
+ *
+ * A single instance is meant to be created per application and shared. It
+ * contains:
+ * - Pooled connection manager, with a limit per route (webservice).
+ * - Keep-alive of pooled connections.
+ * - Connect, connection request and read timeouts.
+ * - Single ObjectMapper for converting the JSON results.
+ *
+ * Each response entity is fully consumed so the connection is returned to the
+ * pool.
+ */
+public class ServiceClient implements Closeable {
+
+  /**
+   * Default max number of connections in the pool.
+   */
+  public static final int DEFAULT_MAX_TOTAL = 200;
+
+  /**
+   * Default max number of connections per route (webservice).
+   */
+  public static final int DEFAULT_MAX_PER_ROUTE = 50;
+
+  /**
+   * Default connect and read timeout, in milliseconds.
+   */
+  public static final int DEFAULT_TIMEOUT = 2000;
+
+  /**
+   * Default time to keep an idle connection alive when the server doesn't
+   * specify one, in milliseconds.
+   */
+  public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+  /**
+   * User agent sent on each request
+   */
+  private static final String USER_AGENT = "BookAgent";
+
+  /**
+   * Pooled client
+   */
+  private final CloseableHttpClient client;
+
+  /**
+   * Mapper to convert JSON results
+   */
+  private final ObjectMapper mapper;
+
+  /**
+   * Create new client with the default pool sizes and timeouts.
+   */
+  public ServiceClient() {
+    this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_TIMEOUT, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * Create new client
+   *
+   * @param maxTotal
+   *          Max number of connections in the pool
+   * @param maxPerRoute
+   *          Max number of connections per route
+   * @param connectTimeout
+   *          Timeout in milliseconds to connect to the webservice
+   * @param readTimeout
+   *          Timeout in milliseconds waiting for data from the webservice
+   */
+  public ServiceClient(int maxTotal, int maxPerRoute, int connectTimeout, int readTimeout) {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout(connectTimeout)
+        .setConnectionRequestTimeout(connectTimeout)
+        .setSocketTimeout(readTimeout)
+        .build();
+
+    // Use the server's keep-alive header, or our default when there isn't one
+    ConnectionKeepAliveStrategy keepAlive = new DefaultConnectionKeepAliveStrategy() {
+      @Override
+      public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long duration = super.getKeepAliveDuration(response, context);
+        if (duration <= 0) {
+          duration = DEFAULT_KEEP_ALIVE;
+        }
+        return duration;
+      }
+    };
+
+    this.client = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy(keepAlive)
+        .setUserAgent(USER_AGENT)
+        .evictExpiredConnections()
+        .evictIdleConnections(DEFAULT_KEEP_ALIVE, TimeUnit.MILLISECONDS)
+        .build();
+
+    this.mapper = new ObjectMapper();
+    this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  }
+
+  /**
+   * Get the shared mapper
+   *
+   * @return the mapper
+   */
+  public ObjectMapper getMapper() {
+    return mapper;
+  }
+
+  /**
+   * Perform a GET against a webservice and convert the JSON result.
+   *
+   * @param url
+   *          URL to get
+   * @param authString
+   *          Authorization header to pass along to the webservice
+   * @param type
+   *          Class to convert the result into
+   * @return Converted result, or null if the webservice did not return 200
+   * @throws IOException
+   *           if the webservice can't be reached or the result can't be converted
+   */
+  public <T> T get(String url, String authString, Class<T> type) throws IOException {
+    String body = get(url, authString);
+    if (body == null) {
+      return null;
+    }
+    return mapper.readValue(body, type);
+  }
+
+  /**
+   * Perform a GET against a webservice and convert the JSON result.
+   *
+   * @param url
+   *          URL to get
+   * @param authString
+   *          Authorization header to pass along to the webservice
+   * @param type
+   *          Type to convert the result into, e.g. a ResultWrapper of beans
+   * @return Converted result, or null if the webservice did not return 200
+   * @throws IOException
+   *           if the webservice can't be reached or the result can't be converted
+   */
+  public <T> T get(String url, String authString, TypeReference<T> type) throws IOException {
+    String body = get(url, authString);
+    if (body == null) {
+      return null;
+    }
+    return mapper.readValue(body, type);
+  }
+
+  /**
+   * Perform a GET against a webservice. The response entity is always
+   * consumed so the connection goes back to the pool.
+   *
+   * @param url
+   *          URL to get
+   * @param authString
+   *          Authorization header to pass along to the webservice
+   * @return Body of the result, or null if the webservice did not return 200
+   * @throws IOException
+   *           if the webservice can't be reached
+   */
+  private String get(String url, String authString) throws IOException {
+    HttpGet request = new HttpGet(url);
+
+    // add request header
+    request.addHeader("content-type", "application/json");
+    request.addHeader("Authorization", authString);
+
+    CloseableHttpResponse response = client.execute(request);
+    try {
+      int responseCode = response.getStatusLine().getStatusCode();
+
+      HttpEntity entity = response.getEntity();
+      String body = (entity == null) ? "" : EntityUtils.toString(entity, "UTF-8");
+
+      if (responseCode == 200) {
+        return body;
+      } else {
+        System.out.println("Unable to get " + url);
+        System.out.println("Error code: " + responseCode);
+        System.out.println("Error content: " + body);
+        return null;
+      }
+    } finally {
+      EntityUtils.consumeQuietly(response.getEntity());
+      response.close();
+    }
+  }
+
+  /**
+   * Close the client and its pooled connections.
+   */
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+}
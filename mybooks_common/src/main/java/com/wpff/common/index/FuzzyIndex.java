@@ -0,0 +1,599 @@
+package com.wpff.common.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory index for typo tolerant search of short texts, e.g. book titles
+ * or author names. 'Tolkein' finds 'J.R.R. Tolkien' and 'asimow' finds 'Isaac
+ * Asimov'.
+ *
+ * Texts and queries are normalized: accents are removed, case is ignored and
+ * punctuation separates words. A text matches when each word of the query is
+ * within a few edits of some word of the text. An edit is inserting, deleting
+ * or changing a character, or swapping two neighbouring characters. The
+ * number of edits allowed grows with the length of the word, see maxEdits.
+ *
+ * The distinct words of all texts form a dictionary, which is far smaller
+ * than the texts. Each dictionary word maps to the sorted list of texts
+ * holding it, and each bigram (2 character substring) maps to the dictionary
+ * words holding it. A word within k edits of a query word still holds all
+ * but 3k of its bigrams, as one edit changes at most 3 of them, and is at
+ * most k characters longer or shorter. The bigram lists are kept per word
+ * length, so only the dictionary words of a close length holding enough of
+ * the bigrams are checked with the edit distance. A query word with 3k
+ * bigrams or fewer, e.g. 'dnue' for 'dune', may share none with its close
+ * words, so it is checked against every dictionary word of a close length.
+ * The texts are then the intersection, per query word, of the texts of its
+ * close words.
+ *
+ * The index is safe for concurrent readers and writers.
+ */
+public class FuzzyIndex {
+
+  /**
+   * ID to the ordinal of its text. Ordinals are dense and reused, so the
+   * per text data are arrays.
+   */
+  private final Map<Integer, Integer> texts = new HashMap<Integer, Integer>();
+
+  /**
+   * Text ordinal to ID
+   */
+  private int[] ids = new int[16];
+
+  /**
+   * Text ordinal to the length of the normalized text, for the ranking
+   */
+  private int[] lengths = new int[16];
+
+  /**
+   * Text ordinal to the ordinals of its distinct words. Null for a free
+   * ordinal.
+   */
+  private int[][] textWords = new int[16][];
+
+  private int textCount = 0;
+
+  private final Postings freeTexts = new Postings();
+
+  /**
+   * Dictionary word to its ordinal
+   */
+  private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+  /**
+   * Word ordinal to word. Null for a free ordinal.
+   */
+  private String[] words = new String[16];
+
+  /**
+   * Word ordinal to the sorted text ordinals holding it
+   */
+  private Postings[] wordTexts = new Postings[16];
+
+  private int wordCount = 0;
+
+  private final Postings freeWords = new Postings();
+
+  /**
+   * Word length and bigram, see gramKey, to the sorted ordinals of the words
+   * of that length holding the bigram
+   */
+  private final Map<Long, Postings> grams = new HashMap<Long, Postings>();
+
+  /**
+   * Word length to the sorted ordinals of the words of that length
+   */
+  private final Map<Integer, Postings> wordsByLength = new HashMap<Integer, Postings>();
+
+  /**
+   * Guards all of the above
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Add or replace the text for an ID
+   *
+   * @param id
+   *          ID of book or author
+   * @param text
+   *          Title or name. A null text removes the ID from the index.
+   */
+  public void put(int id, String text) {
+    String normalized = TextNormalizer.normalize(text);
+    String[] split = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+
+    lock.writeLock().lock();
+    try {
+      removeInternal(id);
+      if (split.length == 0) {
+        return;
+      }
+
+      int ordinal;
+      if (freeTexts.size > 0) {
+        ordinal = freeTexts.ids[--freeTexts.size];
+      }
+      else {
+        if (textCount == ids.length) {
+          ids = Arrays.copyOf(ids, textCount * 2);
+          lengths = Arrays.copyOf(lengths, textCount * 2);
+          textWords = Arrays.copyOf(textWords, textCount * 2);
+        }
+        ordinal = textCount++;
+      }
+
+      Postings distinct = new Postings();
+      for (String word : split) {
+        distinct.add(wordOrdinal(word));
+      }
+      for (int i = 0; i < distinct.size; i++) {
+        wordTexts[distinct.ids[i]].add(ordinal);
+      }
+
+      ids[ordinal] = id;
+      lengths[ordinal] = normalized.length();
+      textWords[ordinal] = Arrays.copyOf(distinct.ids, distinct.size);
+      texts.put(id, ordinal);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove an ID from the index
+   *
+   * @param id
+   *          ID of book or author
+   */
+  public void remove(int id) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find the texts that have a close word for every word of the query
+   *
+   * @param query
+   *          Title or name, possibly misspelled
+   * @param max
+   *          Maximum number of IDs to return
+   * @return IDs of the best matches, most similar first: fewest edits, then
+   *         the text closest in length to the query, then lowest ID. May be
+   *         empty
+   */
+  public List<Integer> search(String query, int max) {
+    String normalized = TextNormalizer.normalize(query);
+    if (normalized.isEmpty()) {
+      return new ArrayList<Integer>();
+    }
+    String[] queryWords = normalized.split(" ");
+
+    lock.readLock().lock();
+    try {
+      // Close dictionary words of each query word, fewest edits first. Each
+      // entry is the edits in the high int and the word ordinal in the low.
+      long[][] matches = new long[queryWords.length][];
+      int driver = 0;
+      long driverSize = Long.MAX_VALUE;
+      for (int i = 0; i < queryWords.length; i++) {
+        matches[i] = closeWords(queryWords[i]);
+        if (matches[i].length == 0) {
+          return new ArrayList<Integer>();
+        }
+
+        long size = 0;
+        for (long match : matches[i]) {
+          size += wordTexts[(int) match].size;
+        }
+        if (size < driverSize) {
+          driver = i;
+          driverSize = size;
+        }
+      }
+
+      // Texts of the query word with the fewest, each with its fewest edits
+      long[] candidates = new long[(int) driverSize];
+      int count = 0;
+      for (long match : matches[driver]) {
+        Postings list = wordTexts[(int) match];
+        long edits = match >>> 32;
+        for (int j = 0; j < list.size; j++) {
+          candidates[count++] = ((long) list.ids[j] << 32) | edits;
+        }
+      }
+      if (matches[driver].length > 1) {
+        Arrays.sort(candidates, 0, count);
+      }
+
+      // Keep the candidates that also have a close word for each other query
+      // word, and rank them. Once twice 'max' are ranked, only the best 'max'
+      // are kept and worse candidates are skipped.
+      int kept = Math.max(0, max);
+      long[] ranked = new long[Math.min(count, 64) + 1];
+      int rankedCount = 0;
+      long worst = Long.MAX_VALUE;
+      int previous = -1;
+      for (int c = 0; c < count; c++) {
+        int ordinal = (int) (candidates[c] >>> 32);
+        if (ordinal == previous) {
+          continue;
+        }
+        previous = ordinal;
+
+        long edits = candidates[c] & 0xFFFFFFFFL;
+        for (int i = 0; i < queryWords.length && edits >= 0; i++) {
+          if (i != driver) {
+            long wordEdits = editsIn(matches[i], ordinal);
+            edits = (wordEdits < 0) ? -1 : edits + wordEdits;
+          }
+        }
+        if (edits < 0) {
+          continue;
+        }
+
+        long lengthDifference = Math.min(Math.abs(lengths[ordinal] - normalized.length()), 0xFFFFFF);
+        long rank = (Math.min(edits, 0x7F) << 56) | (lengthDifference << 32) | (ids[ordinal] & 0xFFFFFFFFL);
+        if (rank >= worst) {
+          continue;
+        }
+
+        if (rankedCount == ranked.length) {
+          if (rankedCount >= 2 * kept) {
+            Arrays.sort(ranked, 0, rankedCount);
+            rankedCount = kept;
+            worst = (kept == 0) ? Long.MIN_VALUE : ranked[kept - 1];
+            if (rank >= worst) {
+              continue;
+            }
+          }
+          else {
+            ranked = Arrays.copyOf(ranked, rankedCount * 2);
+          }
+        }
+        ranked[rankedCount++] = rank;
+      }
+
+      Arrays.sort(ranked, 0, rankedCount);
+      int returned = Math.min(rankedCount, kept);
+      List<Integer> result = new ArrayList<Integer>(returned);
+      for (int i = 0; i < returned; i++) {
+        result.add((int) ranked[i]);
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of IDs in the index
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return texts.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Number of edits allowed for a word. Short words must match exactly, as
+   * nearly any short word is a few edits away from them.
+   *
+   * @param length
+   *          Length of the normalized word
+   * @return maximum number of edits
+   */
+  public static int maxEdits(int length) {
+    if (length <= 3) {
+      return 0;
+    }
+    return (length <= 7) ? 1 : 2;
+  }
+
+  /************************************************************************/
+  /** Helper methods **/
+  /************************************************************************/
+
+  /**
+   * Find the dictionary words within maxEdits of a query word. Caller must
+   * hold the read lock.
+   *
+   * @param word
+   *          Normalized query word
+   * @return edits in the high int and word ordinal in the low, fewest edits
+   *         first
+   */
+  private long[] closeWords(String word) {
+    int k = maxEdits(word.length());
+    if (k == 0) {
+      Integer ordinal = dictionary.get(word);
+      return (ordinal == null) ? new long[0] : new long[] { ordinal };
+    }
+
+    int[] wordGrams = grams(word);
+    int required = wordGrams.length - 3 * k;
+
+    long[] close = new long[16];
+    int closeCount = 0;
+    for (int length = Math.max(1, word.length() - k); length <= word.length() + k; length++) {
+      if (required <= 0) {
+        // A close word need not share any bigram, so check them all
+        Postings all = wordsByLength.get(length);
+        for (int i = 0; (all != null) && (i < all.size); i++) {
+          int ordinal = all.ids[i];
+          int edits = distance(word, words[ordinal], k);
+          if (edits <= k) {
+            if (closeCount == close.length) {
+              close = Arrays.copyOf(close, closeCount * 2);
+            }
+            close[closeCount++] = ((long) edits << 32) | ordinal;
+          }
+        }
+        continue;
+      }
+
+      // Bigram lists of the words of this length, smallest first. Unknown
+      // bigrams have none.
+      List<Postings> lists = new ArrayList<Postings>(wordGrams.length);
+      for (int gram : wordGrams) {
+        Postings list = grams.get(gramKey(length, gram));
+        if (list != null) {
+          lists.add(list);
+        }
+      }
+      if (lists.size() < required) {
+        continue;
+      }
+      lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+      // A close word holds 'required' of the bigrams, so it is in at least
+      // one of the smallest 'size - required + 1' lists. Gather those...
+      int scanned = lists.size() - required + 1;
+      int total = 0;
+      for (int i = 0; i < scanned; i++) {
+        total += lists.get(i).size;
+      }
+      int[] candidates = new int[total];
+      int count = 0;
+      for (int i = 0; i < scanned; i++) {
+        Postings list = lists.get(i);
+        System.arraycopy(list.ids, 0, candidates, count, list.size);
+        count += list.size;
+      }
+      if (scanned > 1) {
+        Arrays.sort(candidates);
+      }
+
+      // ...count each one's bigrams, probing the larger lists, and check the
+      // edit distance of those with enough.
+      for (int c = 0; c < count; ) {
+        int ordinal = candidates[c];
+        int held = 0;
+        while ((c < count) && (candidates[c] == ordinal)) {
+          held++;
+          c++;
+        }
+        for (int j = scanned; (j < lists.size()) && (held < required); j++) {
+          if (lists.get(j).contains(ordinal)) {
+            held++;
+          }
+        }
+        if (held < required) {
+          continue;
+        }
+
+        int edits = distance(word, words[ordinal], k);
+        if (edits <= k) {
+          if (closeCount == close.length) {
+            close = Arrays.copyOf(close, closeCount * 2);
+          }
+          close[closeCount++] = ((long) edits << 32) | ordinal;
+        }
+      }
+    }
+
+    close = Arrays.copyOf(close, closeCount);
+    Arrays.sort(close);
+    return close;
+  }
+
+  /**
+   * Fewest edits of the close words held by a text
+   *
+   * @param matches
+   *          Close words of a query word, fewest edits first
+   * @param ordinal
+   *          Text ordinal
+   * @return edits, or -1 if the text holds none of the words
+   */
+  private long editsIn(long[] matches, int ordinal) {
+    for (long match : matches) {
+      if (wordTexts[(int) match].contains(ordinal)) {
+        return match >>> 32;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the ordinal of a dictionary word, adding it if new. Caller must hold
+   * the write lock.
+   */
+  private int wordOrdinal(String word) {
+    Integer existing = dictionary.get(word);
+    if (existing != null) {
+      return existing;
+    }
+
+    int ordinal;
+    if (freeWords.size > 0) {
+      ordinal = freeWords.ids[--freeWords.size];
+    }
+    else {
+      if (wordCount == words.length) {
+        words = Arrays.copyOf(words, wordCount * 2);
+        wordTexts = Arrays.copyOf(wordTexts, wordCount * 2);
+      }
+      ordinal = wordCount++;
+    }
+
+    words[ordinal] = word;
+    wordTexts[ordinal] = new Postings();
+    dictionary.put(word, ordinal);
+    Postings sameLength = wordsByLength.get(word.length());
+    if (sameLength == null) {
+      sameLength = new Postings();
+      wordsByLength.put(word.length(), sameLength);
+    }
+    sameLength.add(ordinal);
+    for (int gram : grams(word)) {
+      long key = gramKey(word.length(), gram);
+      Postings list = grams.get(key);
+      if (list == null) {
+        list = new Postings();
+        grams.put(key, list);
+      }
+      list.add(ordinal);
+    }
+    return ordinal;
+  }
+
+  /**
+   * Remove an ID, and the dictionary words no other text holds. Caller must
+   * hold the write lock.
+   *
+   * @param id
+   *          ID of book or author
+   */
+  private void removeInternal(int id) {
+    Integer ordinal = texts.remove(id);
+    if (ordinal == null) {
+      return;
+    }
+
+    for (int wordOrdinal : textWords[ordinal]) {
+      Postings list = wordTexts[wordOrdinal];
+      list.remove(ordinal);
+      if (list.size > 0) {
+        continue;
+      }
+
+      String word = words[wordOrdinal];
+      dictionary.remove(word);
+      Postings sameLength = wordsByLength.get(word.length());
+      sameLength.remove(wordOrdinal);
+      if (sameLength.size == 0) {
+        wordsByLength.remove(word.length());
+      }
+      for (int gram : grams(word)) {
+        long key = gramKey(word.length(), gram);
+        Postings gramList = grams.get(key);
+        if (gramList != null) {
+          gramList.remove(wordOrdinal);
+          if (gramList.size == 0) {
+            grams.remove(key);
+          }
+        }
+      }
+      words[wordOrdinal] = null;
+      wordTexts[wordOrdinal] = null;
+      freeWords.append(wordOrdinal);
+    }
+
+    textWords[ordinal] = null;
+    freeTexts.append(ordinal);
+  }
+
+  /**
+   * Edits between two words, stopping once every path needs more than max.
+   * Edits are insert, delete, change and swapping two neighbouring
+   * characters.
+   *
+   * @param a
+   *          Word
+   * @param b
+   *          Other word
+   * @param max
+   *          Most edits of interest
+   * @return number of edits, or max + 1 if more than max
+   */
+  static int distance(String a, String b, int max) {
+    int m = a.length();
+    int n = b.length();
+    if (Math.abs(m - n) > max) {
+      return max + 1;
+    }
+
+    // Rows of the edit table for b's positions j - 2, j - 1 and j
+    int[] before = new int[m + 1];
+    int[] previous = new int[m + 1];
+    int[] current = new int[m + 1];
+    for (int i = 0; i <= m; i++) {
+      previous[i] = i;
+    }
+
+    for (int j = 1; j <= n; j++) {
+      char bj = b.charAt(j - 1);
+      current[0] = j;
+      int rowMinimum = current[0];
+      for (int i = 1; i <= m; i++) {
+        char ai = a.charAt(i - 1);
+        int value = Math.min(Math.min(previous[i] + 1, current[i - 1] + 1),
+                             previous[i - 1] + ((ai == bj) ? 0 : 1));
+        if ((i > 1) && (j > 1) && (ai == b.charAt(j - 2)) && (a.charAt(i - 2) == bj)) {
+          value = Math.min(value, before[i - 2] + 1);
+        }
+        current[i] = value;
+        rowMinimum = Math.min(rowMinimum, value);
+      }
+      if (rowMinimum > max) {
+        return max + 1;
+      }
+
+      int[] oldest = before;
+      before = previous;
+      previous = current;
+      current = oldest;
+    }
+    return Math.min(previous[m], max + 1);
+  }
+
+  /**
+   * Key of the bigram list of the words of a length
+   */
+  private static long gramKey(int length, int gram) {
+    return ((long) length << 32) | (gram & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Get the distinct bigrams of a word, each as its two chars
+   */
+  private static int[] grams(String word) {
+    int[] grams = new int[Math.max(0, word.length() - 1)];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = (word.charAt(i) << 16) | word.charAt(i + 1);
+    }
+    Arrays.sort(grams);
+
+    int size = 0;
+    for (int i = 0; i < grams.length; i++) {
+      if ((size == 0) || (grams[size - 1] != grams[i])) {
+        grams[size++] = grams[i];
+      }
+    }
+    return Arrays.copyOf(grams, size);
+  }
+}
@@ -0,0 +1,57 @@
+package com.wpff.common.index;
+
+import java.util.Arrays;
+
+/**
+ * Sorted, growable list of IDs or ordinals, as held by the in memory indexes
+ * for each subject, word or bigram. IDs are mostly added in increasing order
+ * so adding is usually an append.
+ *
+ * The indexes, here and in the webservices, read 'ids' and 'size' directly in
+ * their inner loops. Only the first 'size' ids are used.
+ */
+public class Postings {
+  public int[] ids = new int[2];
+
+  public int size = 0;
+
+  public void add(int id) {
+    int index = Arrays.binarySearch(ids, 0, size, id);
+    if (index >= 0) {
+      return;
+    }
+    index = -(index + 1);
+
+    grow();
+    System.arraycopy(ids, index, ids, index + 1, size - index);
+    ids[index] = id;
+    size++;
+  }
+
+  /**
+   * Add to the end, for lists that are not sorted, e.g. of free ordinals
+   */
+  public void append(int id) {
+    grow();
+    ids[size++] = id;
+  }
+
+  public void remove(int id) {
+    int index = Arrays.binarySearch(ids, 0, size, id);
+    if (index < 0) {
+      return;
+    }
+    System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+    size--;
+  }
+
+  public boolean contains(int id) {
+    return Arrays.binarySearch(ids, 0, size, id) >= 0;
+  }
+
+  private void grow() {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+  }
+}
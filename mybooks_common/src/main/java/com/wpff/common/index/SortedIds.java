@@ -0,0 +1,111 @@
+package com.wpff.common.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Combines the sorted lists of IDs that the in memory indexes match, so a
+ * list query filtered by an index is counted and paged in memory. Sending
+ * every matching ID to the database instead makes an 'in' list as long as
+ * the matches, which for a common query is most of the table.
+ */
+public final class SortedIds {
+
+  private SortedIds() {
+  }
+
+  /**
+   * Sort IDs given in any order, dropping duplicates
+   *
+   * @param ids
+   *          IDs, e.g. from a query param
+   * @return sorted list of distinct IDs
+   */
+  public static List<Integer> of(Collection<Integer> ids) {
+    int[] all = new int[ids.size()];
+    int size = 0;
+    for (Integer id : ids) {
+      if (id != null) {
+        all[size++] = id;
+      }
+    }
+    Arrays.sort(all, 0, size);
+    return distinct(all, size);
+  }
+
+  /**
+   * Combine sorted lists of IDs
+   *
+   * @param lists
+   *          Sorted lists of distinct IDs, one per filter
+   * @param matchAll
+   *          True to keep the IDs in all of the lists, false to keep the IDs
+   *          in any of them
+   * @return sorted list of distinct IDs. May be empty
+   */
+  public static List<Integer> combine(List<List<Integer>> lists, boolean matchAll) {
+    if (lists.isEmpty()) {
+      return new ArrayList<Integer>();
+    }
+    return matchAll ? intersect(lists) : union(lists);
+  }
+
+  /**
+   * Intersect sorted lists, walking the smallest and searching the others
+   */
+  private static List<Integer> intersect(List<List<Integer>> lists) {
+    List<List<Integer>> bySize = new ArrayList<List<Integer>>(lists);
+    bySize.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+    List<Integer> smallest = bySize.get(0);
+    List<Integer> ids = new ArrayList<Integer>(smallest.size());
+    for (Integer candidate : smallest) {
+      boolean inAll = true;
+      for (int j = 1; j < bySize.size() && inAll; j++) {
+        inAll = Collections.binarySearch(bySize.get(j), candidate) >= 0;
+      }
+      if (inAll) {
+        ids.add(candidate);
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Merge sorted lists, dropping duplicates
+   */
+  private static List<Integer> union(List<List<Integer>> lists) {
+    int total = 0;
+    for (List<Integer> list : lists) {
+      total += list.size();
+    }
+
+    int[] all = new int[total];
+    int size = 0;
+    for (List<Integer> list : lists) {
+      for (Integer id : list) {
+        all[size++] = id;
+      }
+    }
+    if (lists.size() > 1) {
+      Arrays.sort(all);
+    }
+    return distinct(all, size);
+  }
+
+  /**
+   * @return the distinct IDs of the first 'size' sorted IDs
+   */
+  private static List<Integer> distinct(int[] sorted, int size) {
+    List<Integer> ids = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++) {
+      if ((i == 0) || (sorted[i - 1] != sorted[i])) {
+        ids.add(sorted[i]);
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,318 @@
+package com.wpff.common.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory inverted index of the subjects of books or authors. Subjects are
+ * stored as a CSV in the database, which can't be searched without a scan.
+ *
+ * Each subject is trimmed, lower cased and has its inner whitespace
+ * collapsed. Each normalized subject maps to the sorted array of IDs that
+ * have it, so a filter is answered by intersecting (all subjects) or merging
+ * (any subject) those arrays, and the facet count of a subject is the length
+ * of its array.
+ *
+ * The index is safe for concurrent readers and writers.
+ */
+public class SubjectIndex {
+
+  /**
+   * Normalized subject to sorted list of IDs
+   */
+  private final Map<String, Postings> postings = new HashMap<String, Postings>();
+
+  /**
+   * Normalized subject to the subject as first seen, used for the facets
+   */
+  private final Map<String, String> names = new HashMap<String, String>();
+
+  /**
+   * ID to its normalized subjects, used to remove the ID again
+   */
+  private final Map<Integer, String[]> subjects = new HashMap<Integer, String[]>();
+
+  /**
+   * Guards postings, names and subjects
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Add or replace the subjects of an ID
+   *
+   * @param id
+   *          ID of book or author
+   * @param subjectCsv
+   *          CSV of subjects, as stored in the database. Null or empty removes
+   *          the ID from the index.
+   */
+  public void put(int id, String subjectCsv) {
+    List<String> values = split(subjectCsv);
+
+    lock.writeLock().lock();
+    try {
+      removeInternal(id);
+
+      Set<String> normalized = new LinkedHashSet<String>();
+      for (String value : values) {
+        String subject = normalize(value);
+        if (subject.isEmpty() || !normalized.add(subject)) {
+          continue;
+        }
+
+        Postings list = postings.get(subject);
+        if (list == null) {
+          list = new Postings();
+          postings.put(subject, list);
+          names.put(subject, value);
+        }
+        list.add(id);
+      }
+
+      if (!normalized.isEmpty()) {
+        subjects.put(id, normalized.toArray(new String[normalized.size()]));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove an ID from the index
+   *
+   * @param id
+   *          ID of book or author
+   */
+  public void remove(int id) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find the IDs that have the subjects, ignoring case.
+   *
+   * @param query
+   *          Subjects to look for
+   * @param matchAll
+   *          True if an ID must have all of the subjects, false if it must
+   *          have any of them
+   * @return Sorted list of matching IDs. May be empty
+   */
+  public List<Integer> find(Collection<String> query, boolean matchAll) {
+    lock.readLock().lock();
+    try {
+      List<Postings> lists = new ArrayList<Postings>();
+      for (String value : query) {
+        Postings list = postings.get(normalize(value));
+        if (list != null) {
+          lists.add(list);
+        }
+        else if (matchAll) {
+          // An unknown subject can't be matched by any ID
+          return new ArrayList<Integer>();
+        }
+      }
+      if (lists.isEmpty()) {
+        return new ArrayList<Integer>();
+      }
+
+      int[] ids = matchAll ? intersect(lists) : merge(lists);
+      List<Integer> matches = new ArrayList<Integer>(ids.length);
+      for (int id : ids) {
+        matches.add(id);
+      }
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the subjects held by the most IDs
+   *
+   * @param n
+   *          Maximum number of subjects to return
+   * @return Subject to its number of IDs, most first. Ties are ordered by
+   *         subject.
+   */
+  public Map<String, Integer> top(int n) {
+    // Least first, so the head is the one to drop
+    PriorityQueue<Map.Entry<String, Postings>> heap = new PriorityQueue<Map.Entry<String, Postings>>(
+        Math.max(1, n + 1),
+        (a, b) -> (a.getValue().size != b.getValue().size) ?
+            Integer.compare(a.getValue().size, b.getValue().size) :
+            b.getKey().compareTo(a.getKey()));
+
+    Map<String, Integer> top = new LinkedHashMap<String, Integer>();
+    if (n <= 0) {
+      return top;
+    }
+
+    lock.readLock().lock();
+    try {
+      for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+        heap.add(entry);
+        if (heap.size() > n) {
+          heap.poll();
+        }
+      }
+
+      List<Map.Entry<String, Postings>> entries = new ArrayList<Map.Entry<String, Postings>>(heap.size());
+      while (!heap.isEmpty()) {
+        entries.add(heap.poll());
+      }
+      Collections.reverse(entries);
+
+      for (Map.Entry<String, Postings> entry : entries) {
+        top.put(names.get(entry.getKey()), entry.getValue().size);
+      }
+      return top;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of IDs in the index
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return subjects.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Split a CSV of subjects, as stored in the database, into its trimmed
+   * values. Empty values are dropped. This is called for every converted book
+   * and author, so it scans the string instead of using a regex.
+   *
+   * @param csv
+   *          CSV of subjects. May be null
+   * @return list of subjects, empty if the csv is null
+   */
+  public static List<String> split(String csv) {
+    if (csv == null) {
+      return Collections.emptyList();
+    }
+
+    List<String> values = new ArrayList<String>();
+    int start = 0;
+    while (start <= csv.length()) {
+      int end = csv.indexOf(',', start);
+      if (end < 0) {
+        end = csv.length();
+      }
+      String value = csv.substring(start, end).trim();
+      if (!value.isEmpty()) {
+        values.add(value);
+      }
+      start = end + 1;
+    }
+    return values;
+  }
+
+  /************************************************************************/
+  /** Helper methods **/
+  /************************************************************************/
+
+  /**
+   * Remove an ID. Caller must hold the write lock.
+   *
+   * @param id
+   *          ID of book or author
+   */
+  private void removeInternal(int id) {
+    String[] existing = subjects.remove(id);
+    if (existing == null) {
+      return;
+    }
+
+    for (String subject : existing) {
+      Postings list = postings.get(subject);
+      if (list != null) {
+        list.remove(id);
+        if (list.size == 0) {
+          postings.remove(subject);
+          names.remove(subject);
+        }
+      }
+    }
+  }
+
+  /**
+   * Intersect sorted lists, walking the smallest and searching the others
+   */
+  private static int[] intersect(List<Postings> lists) {
+    lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+    Postings smallest = lists.get(0);
+    int[] ids = new int[smallest.size];
+    int size = 0;
+    for (int i = 0; i < smallest.size; i++) {
+      int candidate = smallest.ids[i];
+
+      boolean inAll = true;
+      for (int j = 1; j < lists.size() && inAll; j++) {
+        inAll = lists.get(j).contains(candidate);
+      }
+      if (inAll) {
+        ids[size++] = candidate;
+      }
+    }
+    return Arrays.copyOf(ids, size);
+  }
+
+  /**
+   * Merge sorted lists, dropping duplicates
+   */
+  private static int[] merge(List<Postings> lists) {
+    int total = 0;
+    for (Postings list : lists) {
+      total += list.size;
+    }
+
+    int[] all = new int[total];
+    int offset = 0;
+    for (Postings list : lists) {
+      System.arraycopy(list.ids, 0, all, offset, list.size);
+      offset += list.size;
+    }
+    if (lists.size() > 1) {
+      Arrays.sort(all);
+    }
+
+    int size = 0;
+    for (int i = 0; i < all.length; i++) {
+      if ((size == 0) || (all[size - 1] != all[i])) {
+        all[size++] = all[i];
+      }
+    }
+    return Arrays.copyOf(all, size);
+  }
+
+  /**
+   * Normalize a subject or query
+   */
+  private static String normalize(String value) {
+    return (value == null) ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+}
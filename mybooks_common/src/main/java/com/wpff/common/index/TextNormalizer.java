@@ -0,0 +1,43 @@
+package com.wpff.common.index;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes titles and names, and the queries for them, so the in memory
+ * indexes match them ignoring case, accents and punctuation, e.g. 'J.R.R.
+ * Tolkien' becomes 'j r r tolkien'.
+ */
+public final class TextNormalizer {
+
+  /**
+   * Combining marks, left over once accented letters are decomposed
+   */
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+  /**
+   * Anything that isn't a letter or digit
+   */
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+  private TextNormalizer() {
+  }
+
+  /**
+   * Normalize a text or query: no accents, lower case, and runs of
+   * punctuation and whitespace as a single space.
+   *
+   * @param value
+   *          Text or query. May be null
+   * @return normalized words separated by single spaces, empty if the value
+   *         is null or has no letters or digits
+   */
+  public static String normalize(String value) {
+    if (value == null) {
+      return "";
+    }
+    String unaccented = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+    return SEPARATORS.matcher(unaccented.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+  }
+}
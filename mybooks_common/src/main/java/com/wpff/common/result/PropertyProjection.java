@@ -0,0 +1,104 @@
+package com.wpff.common.result;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+
+/**
+ * Reads only some properties of an entity, e.g. those needed for the fields of
+ * a FieldSet. Only the columns of those properties are selected, and each row
+ * is set on a new entity that is not attached to the session.
+ *
+ * Projections are not aliased. An alias equal to the property name would be
+ * used in the 'where' of the cursor restriction, which MySQL rejects. So the
+ * values are set by position, with the setter registered for each property.
+ *
+ * @param <T>
+ *          Entity
+ */
+public class PropertyProjection<T> {
+
+  /**
+   * Creates an empty entity
+   */
+  private final Supplier<T> factory;
+
+  /**
+   * Property name to the setter of its value
+   */
+  private final Map<String, BiConsumer<T, Object>> setters = new HashMap<String, BiConsumer<T, Object>>();
+
+  /**
+   * Create projection without properties, see property.
+   *
+   * @param factory
+   *          Creates an empty entity
+   */
+  public PropertyProjection(Supplier<T> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Add a property that may be read
+   *
+   * @param property
+   *          Name of property
+   * @param setter
+   *          Sets the value read from the database on an entity
+   * @return this projection
+   */
+  public PropertyProjection<T> property(String property, BiConsumer<T, Object> setter) {
+    setters.put(property, setter);
+    return this;
+  }
+
+  /**
+   * List the entities of a criteria, reading only some of their properties.
+   *
+   * @param criteria
+   *          Criteria for entities
+   * @param properties
+   *          Properties to read. Null to read whole entities, attached to
+   *          the session
+   * @return List of entities, may be empty
+   * @throws IllegalArgumentException
+   *           if a property was not added
+   */
+  @SuppressWarnings("unchecked")
+  public List<T> list(Criteria criteria, List<String> properties) {
+    if (properties == null) {
+      return criteria.list();
+    }
+
+    List<BiConsumer<T, Object>> selected = new ArrayList<BiConsumer<T, Object>>(properties.size());
+    ProjectionList projection = Projections.projectionList();
+    for (String property : properties) {
+      BiConsumer<T, Object> setter = setters.get(property);
+      if (setter == null) {
+        throw new IllegalArgumentException("Unknown property '" + property + "'");
+      }
+      selected.add(setter);
+      projection.add(Projections.property(property));
+    }
+
+    List<Object> rows = criteria.setProjection(projection).list();
+    List<T> entities = new ArrayList<T>(rows.size());
+    for (Object row : rows) {
+      Object[] values = (row instanceof Object[]) ? (Object[]) row : new Object[] { row };
+
+      T entity = factory.get();
+      for (int i = 0; i < values.length; i++) {
+        selected.get(i).accept(entity, values[i]);
+      }
+      entities.add(entity);
+    }
+    return entities;
+  }
+}
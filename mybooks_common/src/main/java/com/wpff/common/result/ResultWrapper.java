@@ -2,6 +2,8 @@ package com.wpff.common.result;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Wrapper for any list of data being returned.
  * Queries for data support a 'offset' and 'limit' parameters to denote
@@ -12,6 +14,7 @@ import java.util.List;
  * - List of results, this may be a partial list.
  * - Start index into the full list.
  * - Length of current list.
+ * - Cursor for the next segment, if there is one.
  */
 public class ResultWrapper<T> { 
   
@@ -28,15 +31,22 @@ public class ResultWrapper<T> {
   private int limit;
   
   /**
-   * Total number of results.
+   * Total number of results. Null when the caller skipped the count.
    */
-  private long total;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long total;
 
   /**
    * List of results. This may be a partial list of the full results.
    */
   private List<T> data;
 
+  /**
+   * Opaque cursor to pass as the 'cursor' query param to get the segment
+   * following this one. Null when there is no more data.
+   */
+  private String next;
+
  
   /**
    * @return the data
@@ -81,18 +91,32 @@ public class ResultWrapper<T> {
   }
 
   /**
-   * @return the total
+   * @return the total, null if not counted
    */
-  public long getTotal() {
+  public Long getTotal() {
     return total;
   }
 
   /**
    * @param total the total to set
    */
-  public void setTotal(long total) {
+  public void setTotal(Long total) {
     this.total = total;
   }
+
+  /**
+   * @return the next
+   */
+  public String getNext() {
+    return next;
+  }
+
+  /**
+   * @param next the next to set
+   */
+  public void setNext(String next) {
+    this.next = next;
+  }
   
 
 
@@ -54,7 +54,7 @@ public class ResultWrapperUtil {
     wrapper.setData(newData);
     wrapper.setLimit(newData.size());
     wrapper.setOffset(whereToStart);
-    wrapper.setTotal(data.size());
+    wrapper.setTotal((long) data.size());
 
     return wrapper;
   }
@@ -68,7 +68,7 @@ public class ResultWrapperUtil {
    *          Data being returned
    * @param segment
    *          Information about the segment of data. This contains the start,
-   *          length and total.
+   *          length, total and the cursor for the next segment.
    * @return wrapper around data
    */
   public static <Q> ResultWrapper<Q> createWrapper(
@@ -80,6 +80,7 @@ public class ResultWrapperUtil {
     wrapper.setLimit(data.size());
     wrapper.setOffset(segment.getOffset());
     wrapper.setTotal(segment.getTotalLength());
+    wrapper.setNext(segment.getNext());
 
     return wrapper;
   }
@@ -1,5 +1,27 @@
 package com.wpff.common.result;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
+
+/**
+ * Describes the segment of data requested by a caller.
+ * 
+ * A segment is located by either:
+ * - offset: index into the full results.
+ * - cursor: opaque token returned as 'next' by the previous segment. The
+ * cursor holds the primary key of the last element of that segment, so the
+ * query can seek directly to the following element instead of skipping
+ * 'offset' rows.
+ * 
+ * When both are present the cursor is used.
+ */
 public class Segment {
   
   int DEFAULT_OFFSET = 0;
@@ -16,11 +38,39 @@ public class Segment {
   Integer limit;
   
   /**
-   * Number of total datum
+   * Number of total datum. Null when the caller skipped the count.
    */
   Long totalLength = 0L;
 
+  /**
+   * Primary key of the last element of the previous segment, from the
+   * incoming cursor. Null when no cursor was supplied.
+   */
+  Integer afterId;
+
+  /**
+   * Cursor for the segment following this one. Null when there is no more
+   * data.
+   */
+  String next;
+
   public Segment(Integer offset, Integer limit) {
+    this(offset, limit, null);
+  }
+
+  /**
+   * Create segment
+   * 
+   * @param offset
+   *          Offset (start) of data segment
+   * @param limit
+   *          Limit (length) of data segment
+   * @param cursor
+   *          Cursor from a previous segment's 'next'. May be null
+   * @throws BadRequestException
+   *           if the cursor is not valid
+   */
+  public Segment(Integer offset, Integer limit, String cursor) {
     super();
     if (offset == null || offset < 0) {
       offset = DEFAULT_OFFSET;
@@ -31,6 +81,92 @@ public class Segment {
 
     this.offset = offset;
     this.limit = limit;
+
+    if (cursor != null && !cursor.isEmpty()) {
+      this.afterId = decodeCursor(cursor);
+    }
+  }
+
+  /**
+   * Restrict a criteria to this segment. When the segment has a cursor, seek
+   * past the last id of the previous segment. Otherwise skip 'offset' rows.
+   *
+   * @param criteria
+   *          Criteria, ordered by 'id'
+   * @return the criteria
+   */
+  public Criteria apply(Criteria criteria) {
+    return apply(criteria, "id");
+  }
+
+  /**
+   * Restrict a criteria to this segment, see apply(Criteria).
+   *
+   * @param criteria
+   *          Criteria, ordered by idProperty
+   * @param idProperty
+   *          Name of the primary key property the cursor holds
+   * @return the criteria
+   */
+  public Criteria apply(Criteria criteria, String idProperty) {
+    if (afterId != null) {
+      criteria.add(Restrictions.gt(idProperty, afterId));
+    } else {
+      criteria.setFirstResult(offset);
+    }
+    return criteria.setMaxResults(limit);
+  }
+
+  /**
+   * Get the IDs of this segment from all the matching IDs, and set the
+   * cursor for the following segment. See apply(Criteria).
+   *
+   * @param ids
+   *          Sorted list of all the matching IDs
+   * @return IDs of this segment, a view of ids
+   */
+  public List<Integer> apply(List<Integer> ids) {
+    int start;
+    if (afterId != null) {
+      int index = Collections.binarySearch(ids, afterId);
+      start = (index >= 0) ? index + 1 : -(index + 1);
+    } else {
+      start = Math.min(offset, ids.size());
+    }
+
+    List<Integer> segmentIds = ids.subList(start, start + Math.min(limit, ids.size() - start));
+    if (!segmentIds.isEmpty()) {
+      setNext(segmentIds.size(), segmentIds.get(segmentIds.size() - 1));
+    }
+    return segmentIds;
+  }
+
+  /**
+   * Decode a cursor into the primary key it holds
+   * 
+   * @param cursor
+   *          Cursor to decode
+   * @return primary key
+   */
+  private static Integer decodeCursor(String cursor) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      return Integer.valueOf(decoded);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid cursor '" + cursor + "'.");
+    }
+  }
+
+  /**
+   * Encode a primary key into a cursor
+   * 
+   * @param id
+   *          primary key
+   * @return cursor
+   */
+  private static String encodeCursor(int id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+        String.valueOf(id).getBytes(StandardCharsets.UTF_8));
   }
 
   /**
@@ -70,10 +206,44 @@ public class Segment {
   }
 
   /**
-   * @param totalLength the totalLength to set
+   * @param totalLength the totalLength to set, null if not counted
    */
   public void setTotalLength(Long totalLength) {
     this.totalLength = totalLength;
   }
 
+  /**
+   * Primary key to seek after, taken from the incoming cursor.
+   * 
+   * @return the primary key, or null if no cursor was supplied
+   */
+  public Integer getAfterId() {
+    return afterId;
+  }
+
+  /**
+   * @return the cursor for the following segment, or null if there is no more data
+   */
+  public String getNext() {
+    return next;
+  }
+
+  /**
+   * Set the cursor for the following segment from the results of this
+   * segment's query. When fewer results than the limit were found there is no
+   * following segment.
+   * 
+   * @param resultSize
+   *          Number of results found for this segment
+   * @param lastId
+   *          Primary key of the last result
+   */
+  public void setNext(int resultSize, int lastId) {
+    if (resultSize > 0 && resultSize >= limit) {
+      this.next = encodeCursor(lastId);
+    } else {
+      this.next = null;
+    }
+  }
+
 }
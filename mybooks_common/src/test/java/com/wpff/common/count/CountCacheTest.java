@@ -0,0 +1,131 @@
+package com.wpff.common.count;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CountCacheTest {
+
+  private CountCache cache;
+
+  /**
+   * Number of times a count was computed
+   */
+  private int computed;
+
+  @Before
+  public void setUp() {
+    cache = new CountCache(1, TimeUnit.HOURS, 100);
+    computed = 0;
+  }
+
+  @Test
+  public void cachedCountIsNotComputedAgain() {
+    assertEquals(10, cache.get("book", CountCache.ALL, count(10)));
+    assertEquals(10, cache.get("book", CountCache.ALL, count(99)));
+    assertEquals(1, computed);
+  }
+
+  @Test
+  public void createAdjustsWholeTableAndMatchingFilter() {
+    cache.get("userbook", CountCache.ALL, count(10));
+    cache.get("userbook", "user=1", count(3));
+    cache.get("userbook", "user=2", count(4));
+
+    cache.adjust("userbook", 1, "user=1");
+
+    assertEquals(11, cache.get("userbook", CountCache.ALL, count(99)));
+    assertEquals(4, cache.get("userbook", "user=1", count(99)));
+    assertEquals(3, computed);
+
+    // May or may not match the created row, so it was dropped
+    assertEquals(5, cache.get("userbook", "user=2", count(5)));
+    assertEquals(4, computed);
+  }
+
+  @Test
+  public void deleteAdjustsWholeTable() {
+    cache.get("book", CountCache.ALL, count(10));
+    cache.adjust("book", -1);
+    assertEquals(9, cache.get("book", CountCache.ALL, count(99)));
+    assertEquals(1, computed);
+  }
+
+  @Test
+  public void countBelowZeroIsDropped() {
+    cache.get("book", CountCache.ALL, count(0));
+    cache.adjust("book", -1);
+    assertEquals(0, cache.get("book", CountCache.ALL, count(0)));
+    assertEquals(2, computed);
+  }
+
+  @Test
+  public void updateDropsFilteredCounts() {
+    cache.get("book", CountCache.ALL, count(10));
+    cache.get("book", "author=1", count(2));
+
+    cache.adjust("book", 0);
+
+    assertEquals(10, cache.get("book", CountCache.ALL, count(99)));
+    assertEquals(3, cache.get("book", "author=1", count(3)));
+    assertEquals(3, computed);
+  }
+
+  @Test
+  public void otherTablesAreKept() {
+    cache.get("author", "subject=x", count(2));
+    cache.adjust("book", 1);
+    assertEquals(2, cache.get("author", "subject=x", count(99)));
+    assertEquals(1, computed);
+  }
+
+  @Test
+  public void countComputedWhileTableChangesIsNotCached() {
+    assertEquals(10, cache.get("book", CountCache.ALL, () -> {
+      cache.adjust("book", 1);
+      return 10;
+    }));
+    assertEquals(11, cache.get("book", CountCache.ALL, count(11)));
+    assertEquals(1, computed);
+  }
+
+  @Test
+  public void countIsComputedAgainAfterRefreshInterval() {
+    cache = new CountCache(0, TimeUnit.MILLISECONDS, 100);
+    cache.get("book", CountCache.ALL, count(10));
+    assertEquals(11, cache.get("book", CountCache.ALL, count(11)));
+    assertEquals(2, computed);
+  }
+
+  @Test
+  public void leastRecentlyReadCountIsDropped() {
+    cache = new CountCache(1, TimeUnit.HOURS, 2);
+    cache.get("book", "a", count(1));
+    cache.get("book", "b", count(2));
+    // Read 'a' again, so 'b' is the least recently read
+    cache.get("book", "a", count(99));
+    cache.get("book", "c", count(3));
+    assertEquals(3, computed);
+
+    assertEquals(1, cache.get("book", "a", count(99)));
+    assertEquals(3, cache.get("book", "c", count(99)));
+    assertEquals(3, computed);
+
+    assertEquals(20, cache.get("book", "b", count(20)));
+    assertEquals(4, computed);
+  }
+
+  /**
+   * @return supplier of a count that records that it was computed
+   */
+  private LongSupplier count(long value) {
+    return () -> {
+      computed++;
+      return value;
+    };
+  }
+}
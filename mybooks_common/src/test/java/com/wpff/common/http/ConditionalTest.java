@@ -0,0 +1,82 @@
+package com.wpff.common.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+
+public class ConditionalTest {
+
+  private static final EntityTag BOOK = Conditional.tag("book", 42, 3);
+
+  @Test
+  public void buildsTagFromParts() {
+    assertEquals("book-42-3", BOOK.getValue());
+  }
+
+  @Test
+  public void requestWithoutIfMatchIsAllowed() {
+    Conditional.verifyMatch((String) null, BOOK);
+    Conditional.verifyMatch(" ", BOOK);
+  }
+
+  @Test
+  public void matchesEntityTag() {
+    Conditional.verifyMatch("\"book-42-3\"", BOOK);
+  }
+
+  @Test
+  public void matchesTagWithVersionsOfOtherTables() {
+    // As returned by GET, with the author table version added
+    Conditional.verifyMatch("\"book-42-3-17\"", BOOK);
+  }
+
+  @Test
+  public void matchesAnyOfSeveralTags() {
+    Conditional.verifyMatch("\"book-42-2\", \"book-42-3\"", BOOK);
+  }
+
+  @Test
+  public void matchesStar() {
+    Conditional.verifyMatch("*", BOOK);
+  }
+
+  @Test
+  public void rejectsOlderVersion() {
+    verifyPreconditionFailed("\"book-42-2-17\"");
+  }
+
+  @Test
+  public void rejectsVersionWithSamePrefix() {
+    verifyPreconditionFailed("\"book-42-30\"");
+  }
+
+  @Test
+  public void rejectsIdWithSamePrefix() {
+    verifyPreconditionFailed("\"book-4-3\"");
+    verifyPreconditionFailed("\"book-421-3\"");
+  }
+
+  @Test
+  public void rejectsWeakTag() {
+    verifyPreconditionFailed("W/\"book-42-3\"");
+  }
+
+  @Test
+  public void rejectsUnquotedTag() {
+    verifyPreconditionFailed("book-42-3");
+  }
+
+  private static void verifyPreconditionFailed(String ifMatch) {
+    try {
+      Conditional.verifyMatch(ifMatch, BOOK);
+      fail("'" + ifMatch + "' matched");
+    } catch (WebApplicationException e) {
+      assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), e.getResponse().getStatus());
+    }
+  }
+}
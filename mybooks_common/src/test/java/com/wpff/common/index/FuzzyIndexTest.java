@@ -0,0 +1,56 @@
+package com.wpff.common.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FuzzyIndexTest {
+
+  private FuzzyIndex index;
+
+  @Before
+  public void setUp() {
+    index = new FuzzyIndex();
+    index.put(1, "Dune");
+    index.put(2, "Dune Messiah");
+    index.put(3, "Wolf Hall");
+    index.put(4, "The Hobbit");
+    index.put(5, "Foundation and Empire");
+  }
+
+  @Test
+  public void findsShortWordWithoutSharedBigram() {
+    // 'dnue' shares no bigram with 'dune'
+    assertEquals(Arrays.asList(1, 2), index.search("dnue", 10));
+  }
+
+  @Test
+  public void findsEveryWordOfQuery() {
+    // 'wlof' shares no bigram with 'wolf'
+    assertEquals(Collections.singletonList(3), index.search("wlof hall", 10));
+  }
+
+  @Test
+  public void findsLongWordBySharedBigrams() {
+    assertEquals(Collections.singletonList(5), index.search("foundaton", 10));
+    assertEquals(Collections.singletonList(4), index.search("hobit", 10));
+  }
+
+  @Test
+  public void ranksFewestEditsFirst() {
+    assertEquals(Arrays.asList(2), index.search("dune mesiah", 10));
+    assertEquals(Arrays.asList(1, 2), index.search("dune", 10));
+  }
+
+  @Test
+  public void removedTextIsNotFound() {
+    index.remove(3);
+    assertTrue(index.search("wlof hall", 10).isEmpty());
+    assertEquals(4, index.size());
+  }
+}
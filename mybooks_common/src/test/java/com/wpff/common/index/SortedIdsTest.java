@@ -0,0 +1,54 @@
+package com.wpff.common.index;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SortedIdsTest {
+
+  @Test
+  public void sortsAndDropsDuplicatesAndNulls() {
+    assertEquals(Arrays.asList(1, 3, 5), SortedIds.of(Arrays.asList(5, 1, null, 5, 3)));
+  }
+
+  @Test
+  public void intersectsLists() {
+    List<List<Integer>> lists = Arrays.asList(
+        Arrays.asList(1, 2, 3, 4, 8),
+        Arrays.asList(2, 4, 6, 8),
+        Arrays.asList(0, 2, 8, 9));
+    assertEquals(Arrays.asList(2, 8), SortedIds.combine(lists, true));
+  }
+
+  @Test
+  public void intersectionWithEmptyListIsEmpty() {
+    List<List<Integer>> lists = Arrays.asList(Arrays.asList(1, 2), Collections.<Integer> emptyList());
+    assertEquals(Collections.<Integer> emptyList(), SortedIds.combine(lists, true));
+  }
+
+  @Test
+  public void mergesListsWithoutDuplicates() {
+    List<List<Integer>> lists = Arrays.asList(
+        Arrays.asList(1, 3, 5),
+        Arrays.asList(2, 3, 4),
+        Collections.<Integer> emptyList());
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), SortedIds.combine(lists, false));
+  }
+
+  @Test
+  public void singleListIsKept() {
+    List<List<Integer>> lists = Collections.singletonList(Arrays.asList(1, 4, 7));
+    assertEquals(Arrays.asList(1, 4, 7), SortedIds.combine(lists, false));
+    assertEquals(Arrays.asList(1, 4, 7), SortedIds.combine(lists, true));
+  }
+
+  @Test
+  public void noListsGiveNoIds() {
+    assertEquals(Collections.<Integer> emptyList(), SortedIds.combine(Collections.<List<Integer>> emptyList(), true));
+    assertEquals(Collections.<Integer> emptyList(), SortedIds.combine(Collections.<List<Integer>> emptyList(), false));
+  }
+}
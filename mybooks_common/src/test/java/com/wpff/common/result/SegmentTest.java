@@ -0,0 +1,95 @@
+package com.wpff.common.result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.BadRequestException;
+
+import org.junit.Test;
+
+public class SegmentTest {
+
+  private static final List<Integer> IDS = Arrays.asList(1, 3, 5, 7, 9);
+
+  @Test
+  public void pagesThroughIdsWithCursors() {
+    Segment first = new Segment(null, 2, null);
+    assertEquals(Arrays.asList(1, 3), first.apply(IDS));
+    assertNotNull(first.getNext());
+
+    Segment second = new Segment(null, 2, first.getNext());
+    assertEquals(Integer.valueOf(3), second.getAfterId());
+    assertEquals(Arrays.asList(5, 7), second.apply(IDS));
+
+    Segment last = new Segment(null, 2, second.getNext());
+    assertEquals(Collections.singletonList(9), last.apply(IDS));
+    assertNull(last.getNext());
+  }
+
+  @Test
+  public void cursorIsUsedInsteadOfOffset() {
+    Segment first = new Segment(0, 1, null);
+    first.apply(IDS);
+
+    Segment second = new Segment(3, 1, first.getNext());
+    assertEquals(Collections.singletonList(3), second.apply(IDS));
+  }
+
+  @Test
+  public void cursorOfRemovedIdSeeksToFollowingId() {
+    Segment first = new Segment(null, 2, null);
+    first.apply(Arrays.asList(2, 4));
+
+    // 4 was removed since the first segment was read
+    Segment second = new Segment(null, 2, first.getNext());
+    assertEquals(Arrays.asList(5, 7), second.apply(IDS));
+  }
+
+  @Test
+  public void fullLastSegmentHasNextThatReturnsNothing() {
+    Segment first = new Segment(null, 5, null);
+    assertEquals(IDS, first.apply(IDS));
+    assertNotNull(first.getNext());
+
+    Segment second = new Segment(null, 5, first.getNext());
+    assertEquals(Collections.<Integer> emptyList(), second.apply(IDS));
+    assertNull(second.getNext());
+  }
+
+  @Test
+  public void offsetSkipsIds() {
+    Segment segment = new Segment(3, 10, null);
+    assertEquals(Arrays.asList(7, 9), segment.apply(IDS));
+    assertNull(segment.getNext());
+  }
+
+  @Test
+  public void offsetPastEndReturnsNothing() {
+    Segment segment = new Segment(10, 2, null);
+    assertEquals(Collections.<Integer> emptyList(), segment.apply(IDS));
+    assertNull(segment.getNext());
+  }
+
+  @Test
+  public void negativeOffsetAndLimitUseDefaults() {
+    Segment segment = new Segment(-1, -1, null);
+    assertEquals(Integer.valueOf(0), segment.getOffset());
+    assertEquals(Integer.valueOf(20), segment.getLimit());
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void cursorThatIsNotBase64IsRejected() {
+    new Segment(null, 2, "not a cursor");
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void cursorThatIsNotAnIdIsRejected() {
+    // 'abc' in base64
+    new Segment(null, 2, "YWJj");
+  }
+}